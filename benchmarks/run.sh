@@ -0,0 +1,13 @@
+#!/bin/sh
+# Run all benchmarks with allocation profiling for each thread count and write JSON results to
+# target/results/, which can be compared between releases (for example with https://jmh.morethan.io/).
+# Usage: ./run.sh [thread counts...] (default: 1 2 4 8)
+set -e
+cd "$(dirname "$0")"
+
+THREADS="${*:-1 2 4 8}"
+mkdir -p target/results
+
+for t in $THREADS; do
+    java -jar target/benchmarks.jar -t "$t" -prof gc -rf json -rff "target/results/threads-$t.json"
+done
@@ -0,0 +1,93 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.SimpleEvalContext;
+
+/**
+ * Cost of {@link SimpleEvalContext#applyOperator(Object, Operator, Object)} for each kind of operands.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArithmeticBenchmark {
+	private final EvalContext ctx = new SimpleEvalContext() {};
+
+	// Fields instead of constants so JIT can't fold them
+	public Object smallInt = 12, bigInt = 123456, bigLong = 123456789L;
+	public Object floatVal = 1.5F, doubleVal = 2.25D;
+
+	@Benchmark
+	public Object intAdd() {
+		return ctx.applyOperator(smallInt, Operator.ADD, bigInt);
+	}
+
+	@Benchmark
+	public Object longMultiply() {
+		return ctx.applyOperator(bigLong, Operator.MULTIPLY, bigInt);
+	}
+
+	@Benchmark
+	public Object floatDivide() {
+		return ctx.applyOperator(floatVal, Operator.DIVIDE, smallInt);
+	}
+
+	@Benchmark
+	public Object doubleMixedSubtract() {
+		return ctx.applyOperator(doubleVal, Operator.SUBTRACT, floatVal);
+	}
+
+	@Benchmark
+	public Object power() {
+		return ctx.applyOperator(doubleVal, Operator.POWER, smallInt);
+	}
+
+	@Benchmark
+	public Object comparison() {
+		return ctx.applyOperator(bigInt, Operator.GREATER_THAN, smallInt);
+	}
+
+	@Benchmark
+	public Object bitwise() {
+		return ctx.applyOperator(bigInt, Operator.XOR, bigLong);
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.SimpleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvalBenchmark {
+	@Param
+	public Workload workload;
+
+	private EvalContext ctx;
+	private VariablesInterface variables;
+	private Expression tree;
+	private VirtualMachineExpression vm;
+	private VirtualMachineExpression unoptimizedVm;
+
+	@Setup
+	public void setup() {
+		ctx = new SimpleEvalContext() {};
+		variables = Workload.variables();
+		tree = Expression.parse(workload.source);
+		vm = Expression.compile(workload.source);
+		unoptimizedVm = VirtualMachineExpression.compile(tree, null, false);
+	}
+
+	@Benchmark
+	public Object tree() {
+		return tree.eval(ctx, variables);
+	}
+
+	@Benchmark
+	public Object virtualMachine() {
+		return vm.eval(ctx, variables);
+	}
+
+	/**
+	 * Virtual machine without superinstructions, to measure peephole optimizer.
+	 */
+	@Benchmark
+	public Object virtualMachineUnoptimized() {
+		return unoptimizedVm.eval(ctx, variables);
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.SimpleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+import dev.phomc.expressionseval.stream.ExpressionStreams;
+import dev.phomc.expressionseval.stream.RecordAccessor;
+
+/**
+ * Compare filtering records with {@link ExpressionStreams} against hand-written loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamBenchmark {
+	@Param({ "100000" })
+	public int records;
+
+	private EvalContext ctx;
+	private List<Map<String, Object>> data;
+	private VirtualMachineExpression predicate;
+
+	@Setup
+	public void setup() {
+		ctx = new SimpleEvalContext() {};
+		data = new ArrayList<>();
+		for (int i = 0; i < records; i++) data.add(Map.of("category", i % 4, "price", i * 2));
+		predicate = Expression.compile("category == 3");
+	}
+
+	@Benchmark
+	public long handWrittenLoop() {
+		long count = 0;
+
+		for (Map<String, Object> record : data) {
+			if (predicate.eval(ctx, VariablesInterface.of(record)) == Boolean.TRUE) count++;
+		}
+
+		return count;
+	}
+
+	@Benchmark
+	public long stream() {
+		return ExpressionStreams.filter(data.stream(), predicate, ctx, RecordAccessor.ofMap()).count();
+	}
+
+	@Benchmark
+	public long parallelStream() {
+		return ExpressionStreams.filter(data.parallelStream(), predicate, ctx, RecordAccessor.ofMap()).count();
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.benchmark;
+
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import dev.phomc.expressionseval.VariablesInterface;
+
+/**
+ * Expressions used by benchmarks. All of them can be evaluated with {@link #variables()}.
+ */
+public enum Workload {
+	VFX_FORMULA("(time * speed + offset) * 0.5 + amplitude * 2"),
+	NESTED_ARITHMETIC("1 + 2 * (3 - 4 * 5 * (6 + 7 * 8 * (9 - 10 / (11 + 12 * (13 + 14 * (15 - 16))))))"),
+	PROPERTY_CHAINS("particle.position.x * particle.velocity.x + particle.position.y * particle.velocity.y + world.gravity.y"),
+	FUNCTION_CALLS("max(sin(time), cos(speed)) + min(abs(offset), sqrt(amplitude)) + pow(time, 2)");
+
+	public final String source;
+
+	Workload(String source) {
+		this.source = source;
+	}
+
+	public static VariablesInterface variables() {
+		return VariablesInterface.of(Map.ofEntries(
+				Map.entry("time", 1.5D),
+				Map.entry("speed", 2D),
+				Map.entry("offset", 0.25D),
+				Map.entry("amplitude", 3D),
+				Map.entry("particle", Map.of(
+						"position", Map.of("x", 12.5D, "y", 4D),
+						"velocity", Map.of("x", 0.5D, "y", -1.25D))),
+				Map.entry("world", Map.of("gravity", Map.of("y", -9.81D))),
+				Map.entry("sin", unary(Math::sin)),
+				Map.entry("cos", unary(Math::cos)),
+				Map.entry("abs", unary(Math::abs)),
+				Map.entry("sqrt", unary(Math::sqrt)),
+				Map.entry("min", binary(Math::min)),
+				Map.entry("max", binary(Math::max)),
+				Map.entry("pow", binary(Math::pow))));
+	}
+
+	private static Function<Object, Object> unary(Function<Double, Double> func) {
+		return v -> func.apply(((Number) v).doubleValue());
+	}
+
+	private static BiFunction<Object, Object, Object> binary(BiFunction<Double, Double, Double> func) {
+		return (a, b) -> func.apply(((Number) a).doubleValue(), ((Number) b).doubleValue());
+	}
+}
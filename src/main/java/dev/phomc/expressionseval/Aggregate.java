@@ -0,0 +1,121 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval;
+
+import java.util.Locale;
+
+/**
+ * Aggregate functions over {@code double[]}, {@code long[]} and {@code List<Number>}. {@link AggregateEvalContext}
+ * resolves {@code sum}, {@code avg}, {@code min}, {@code max} and {@code count} to these functions when
+ * variables don't contain a variable with the same name, so {@code sum(samples * 2)} works without custom
+ * functions. Numbers are treated as vectors with one element. {@link SimpleEvalContext} calls them with exactly
+ * one parameter.
+ * <p>
+ * These functions are pure, but {@link MemoizingEvalContext} doesn't cache them, because hashing and copying
+ * vector parameters costs as much as aggregating them.
+ */
+public enum Aggregate implements PureFunction {
+	/**
+	 * Sum of elements: {@code Long} for integer vectors, {@code Double} otherwise.
+	 */
+	SUM,
+	/**
+	 * Mean of elements as {@code Double}, {@code NaN} if empty.
+	 */
+	AVG,
+	/**
+	 * Smallest element, {@code null} if empty.
+	 */
+	MIN,
+	/**
+	 * Largest element, {@code null} if empty.
+	 */
+	MAX,
+	/**
+	 * Number of elements as {@code Integer}.
+	 */
+	COUNT;
+
+	public final String functionName = name().toLowerCase(Locale.ROOT);
+
+	/**
+	 * @param name Function name.
+	 * @return Aggregate function, or {@code null}.
+	 */
+	public static Aggregate byName(String name) {
+		return switch (name) {
+		case "sum" -> SUM;
+		case "avg" -> AVG;
+		case "min" -> MIN;
+		case "max" -> MAX;
+		case "count" -> COUNT;
+		default -> null;
+		};
+	}
+
+	/**
+	 * @param values Vector or number.
+	 * @return Aggregated value, or {@code null} if values is not a vector or number.
+	 */
+	public Object apply(Object values) {
+		Object normalized = Vectors.normalize(values);
+		if (normalized instanceof long[] longs) return apply(longs);
+		if (normalized instanceof double[] doubles) return apply(doubles);
+		return null;
+	}
+
+	private Object apply(long[] values) {
+		if (this == COUNT) return values.length;
+		if (this == AVG) return apply(Vectors.toDoubles(values));
+		if (values.length == 0) return this == SUM? 0L : null;
+
+		long result = this == SUM? 0 : values[0];
+
+		switch (this) {
+		case SUM -> { for (long v : values) result += v; }
+		case MIN -> { for (long v : values) result = Math.min(result, v); }
+		case MAX -> { for (long v : values) result = Math.max(result, v); }
+		default -> throw new IllegalStateException();
+		}
+
+		return result;
+	}
+
+	private Object apply(double[] values) {
+		if (this == COUNT) return values.length;
+		if (values.length == 0) return this == SUM? 0D : this == AVG? Double.NaN : null;
+
+		double result = this == SUM || this == AVG? 0 : values[0];
+
+		switch (this) {
+		case SUM, AVG -> { for (double v : values) result += v; }
+		case MIN -> { for (double v : values) result = Math.min(result, v); }
+		case MAX -> { for (double v : values) result = Math.max(result, v); }
+		default -> throw new IllegalStateException();
+		}
+
+		return this == AVG? result / values.length : result;
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval;
+
+/**
+ * {@link SimpleEvalContext} with {@link Aggregate} functions. Root variables named {@code sum}, {@code avg},
+ * {@code min}, {@code max} and {@code count} resolve to aggregates if variables don't contain them at all (see
+ * {@link VariablesInterface#contains(String)}), so variables with {@code null} value stay {@code null}.
+ * <pre>{@code
+ * Expression.compile("sum(samples * 2) / count(samples)").eval(AggregateEvalContext.INSTANCE, variables);
+ * }</pre>
+ */
+public interface AggregateEvalContext extends SimpleEvalContext {
+	AggregateEvalContext INSTANCE = new AggregateEvalContext() {};
+
+	@Override
+	default Object propertyOf(Object src, String name, VariablesInterface variables) {
+		if (src != null) return SimpleEvalContext.super.propertyOf(src, name, variables);
+		if (variables == null) return Aggregate.byName(name);
+		Object val = variables.get(name);
+		return val != null || variables.contains(name)? val : Aggregate.byName(name);
+	}
+}
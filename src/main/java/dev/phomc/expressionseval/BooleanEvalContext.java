@@ -0,0 +1,118 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval;
+
+import java.util.Objects;
+
+/**
+ * {@link SimpleEvalContext} with boolean comparisons, for predicates and rules. {@code ==}, {@code >}, {@code <},
+ * {@code >=} and {@code <=} return {@link Boolean}, and {@code &}, {@code |} and {@code ^} are logical operators
+ * when both operands are booleans. Other operators and vector operands work like {@link SimpleEvalContext}.
+ * <p>
+ * Numbers are compared by value with {@link #compareNumbers(Number, Number)}, so {@code 3 == 3.0}. Comparisons
+ * with {@code NaN} are {@code false}. Other values are equal if {@link Object#equals(Object)}, and are ordered
+ * if they are {@link Comparable} of the same class, otherwise ordering comparisons return {@code null}.
+ * <pre>{@code
+ * ExpressionStreams.filter(orders, Expression.parse("price > 100"), BooleanEvalContext.INSTANCE, Order::field);
+ * }</pre>
+ */
+public interface BooleanEvalContext extends SimpleEvalContext {
+	BooleanEvalContext INSTANCE = new BooleanEvalContext() {};
+
+	@Override
+	default Object applyOperator(Object a, Operator op, Object b) {
+		if (op != Operator.EQUALS && (Vectors.isVector(a) || Vectors.isVector(b))) return SimpleEvalContext.super.applyOperator(a, op, b);
+
+		switch (op) {
+		case EQUALS:
+			if (a instanceof Number na && b instanceof Number nb) return !isNaN(na) && !isNaN(nb) && compareNumbers(na, nb) == 0;
+			return Objects.equals(a, b);
+		case GREATER_THAN, LESS_THAN, GREATER_OR_EQU, LESS_OR_EQU: {
+			Integer compare = compare(a, b);
+			if (compare == null) return a instanceof Number && b instanceof Number? false : null;
+			return switch (op) {
+			case GREATER_THAN -> compare > 0;
+			case LESS_THAN -> compare < 0;
+			case GREATER_OR_EQU -> compare >= 0;
+			default -> compare <= 0;
+			};
+		}
+		case AND, OR, XOR:
+			if (a instanceof Boolean ba && b instanceof Boolean bb) return switch (op) {
+			case AND -> ba && bb;
+			case OR -> ba || bb;
+			default -> ba ^ bb;
+			};
+			break;
+		default:
+			break;
+		}
+
+		return SimpleEvalContext.super.applyOperator(a, op, b);
+	}
+
+	/**
+	 * @return Result of comparing, or {@code null} if values are not ordered.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static Integer compare(Object a, Object b) {
+		if (a instanceof Number na && b instanceof Number nb) return isNaN(na) || isNaN(nb)? null : compareNumbers(na, nb);
+		if (a instanceof Comparable ca && b != null && a.getClass() == b.getClass()) return ca.compareTo(b);
+		return null;
+	}
+
+	private static boolean isNaN(Number n) {
+		return (n instanceof Double || n instanceof Float) && Double.isNaN(n.doubleValue());
+	}
+
+	private static boolean isIntegral(Number n) {
+		return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+	}
+
+	/**
+	 * Compare numbers by value. Integers are compared as {@code long}, and integers are compared with decimals
+	 * without rounding the integer to {@code double}, so large values don't lose precision.
+	 * @param a First number.
+	 * @param b Second number.
+	 * @return Negative, zero or positive if {@code a} is less than, equal to or greater than {@code b}.
+	 */
+	static int compareNumbers(Number a, Number b) {
+		boolean integralA = isIntegral(a), integralB = isIntegral(b);
+		if (integralA && integralB) return Long.compare(a.longValue(), b.longValue());
+		if (integralA) return compare(a.longValue(), b.doubleValue());
+		if (integralB) return -compare(b.longValue(), a.doubleValue());
+		return Double.compare(a.doubleValue(), b.doubleValue());
+	}
+
+	private static int compare(long l, double d) {
+		if (d >= 0x1p63) return -1;
+		if (d < -0x1p63) return 1;
+
+		// Integer part of double is exact, so compare that first and then fraction
+		long integer = (long) d;
+		if (l != integer) return Long.compare(l, integer);
+		return d > integer? -1 : d < integer? 1 : 0;
+	}
+}
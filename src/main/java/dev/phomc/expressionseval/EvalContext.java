@@ -38,4 +38,13 @@ public interface EvalContext {
 	Object propertyOf(Object src, String name, VariablesInterface variables);
 
 	Object functionCall(Object function, Object[] parameters);
+
+	/**
+	 * Check if calling function always returns the same result for the same parameters without side effects.
+	 * @param function Function object.
+	 * @return {@code true} if function is pure. By default, only {@link PureFunction} is pure.
+	 */
+	default boolean isPure(Object function) {
+		return function instanceof PureFunction;
+	}
 }
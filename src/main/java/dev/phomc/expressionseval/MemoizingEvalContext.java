@@ -0,0 +1,284 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Context that caches results of pure function calls. Each function has its own bounded cache keyed by
+ * parameter values, which is shared by all evaluations using this context. Number of functions with caches
+ * is also bounded. Arrays, lists and maps are compared by
+ * content, so they can be modified in place between calls. Impure functions and {@link Aggregate} functions
+ * are always called.
+ * @see EvalContext#isPure(Object)
+ */
+public class MemoizingEvalContext implements EvalContext {
+	public static final int DEFAULT_MAX_FUNCTIONS = 256;
+	private static final Object NULL = new Object();
+
+	public final EvalContext delegate;
+	public final int maxEntriesPerFunction;
+	public final int maxFunctions;
+	public final Eviction eviction;
+	private final Map<Object, CallCache> caches = new ConcurrentHashMap<>();
+
+	/**
+	 * @param delegate Context to delegate to.
+	 * @param maxEntriesPerFunction Maximum number of cached results of each function.
+	 * @param maxFunctions Maximum number of functions with caches. When a new function is called, cache of an
+	 * arbitrary function is dropped, so function objects that are created for every evaluation don't grow the
+	 * context forever.
+	 * @param eviction Eviction of results.
+	 */
+	public MemoizingEvalContext(EvalContext delegate, int maxEntriesPerFunction, int maxFunctions, Eviction eviction) {
+		if (maxEntriesPerFunction < 1) throw new IllegalArgumentException("Cache size must be at least 1");
+		if (maxFunctions < 1) throw new IllegalArgumentException("Functions limit must be at least 1");
+		this.delegate = delegate;
+		this.maxEntriesPerFunction = maxEntriesPerFunction;
+		this.maxFunctions = maxFunctions;
+		this.eviction = eviction;
+	}
+
+	public MemoizingEvalContext(EvalContext delegate, int maxEntriesPerFunction, Eviction eviction) {
+		this(delegate, maxEntriesPerFunction, DEFAULT_MAX_FUNCTIONS, eviction);
+	}
+
+	public MemoizingEvalContext(EvalContext delegate, int maxEntriesPerFunction) {
+		this(delegate, maxEntriesPerFunction, Eviction.LRU);
+	}
+
+	@Override
+	public Object applyOperator(Object a, Operator op, Object b) {
+		return delegate.applyOperator(a, op, b);
+	}
+
+	@Override
+	public Object propertyOf(Object src, String name, VariablesInterface variables) {
+		return delegate.propertyOf(src, name, variables);
+	}
+
+	@Override
+	public Object functionCall(Object function, Object[] parameters) {
+		// Aggregates cost as much as hashing their vectors
+		if (function == null || function instanceof Aggregate || !delegate.isPure(function)) return delegate.functionCall(function, parameters);
+		CallCache cache = caches.get(function);
+		if (cache == null) cache = newCache(function);
+
+		Object result = cache.get(keyOf(parameters, false));
+		if (result != null) return result == NULL? null : result;
+
+		result = delegate.functionCall(function, parameters);
+		cache.put(keyOf(parameters, true), result == null? NULL : result);
+		return result;
+	}
+
+	private CallCache newCache(Object function) {
+		// Size may briefly exceed the limit by the number of threads adding at the same time
+		Iterator<Object> functions = caches.keySet().iterator();
+		while (caches.size() >= maxFunctions && functions.hasNext()) {
+			functions.next();
+			functions.remove();
+		}
+
+		return caches.computeIfAbsent(function, f -> new CallCache(maxEntriesPerFunction, eviction));
+	}
+
+	/**
+	 * Cache key of parameters. Arrays are compared by content, and stored keys copy arrays, lists and maps, so
+	 * parameters that are modified in place after the call don't return stale results.
+	 * @param parameters Parameters.
+	 * @param stored Whether key is stored in cache.
+	 * @return Key.
+	 */
+	private static List<Object> keyOf(Object[] parameters, boolean stored) {
+		Object[] key = stored? parameters.clone() : parameters;
+
+		for (int i = 0; i < key.length; i++) {
+			Object value = key[i];
+
+			if (value != null && value.getClass().isArray()) {
+				if (key == parameters) key = parameters.clone();
+				key[i] = new ArrayKey(stored? copyOf(value) : value);
+			} else if (stored && value instanceof List<?> list) {
+				key[i] = new ArrayList<>(list);
+			} else if (stored && value instanceof Map<?, ?> map) {
+				key[i] = new HashMap<>(map);
+			}
+		}
+
+		return Arrays.asList(key);
+	}
+
+	private static Object copyOf(Object array) {
+		int length = Array.getLength(array);
+		Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
+
+	@Override
+	public boolean isPure(Object function) {
+		return delegate.isPure(function);
+	}
+
+	/**
+	 * @param function Function object.
+	 * @return Cache of function, or {@code null} if the function hasn't been called.
+	 */
+	public CallCache cacheOf(Object function) {
+		return caches.get(function);
+	}
+
+	public Map<Object, CallCache> caches() {
+		return Collections.unmodifiableMap(caches);
+	}
+
+	public void clear() {
+		caches.clear();
+	}
+
+	private static final class ArrayKey {
+		private final Object array;
+		private final int hash;
+
+		ArrayKey(Object array) {
+			this.array = array;
+			this.hash = hashOf(array);
+		}
+
+		private static int hashOf(Object array) {
+			if (array instanceof double[] a) return Arrays.hashCode(a);
+			if (array instanceof long[] a) return Arrays.hashCode(a);
+			if (array instanceof int[] a) return Arrays.hashCode(a);
+			if (array instanceof float[] a) return Arrays.hashCode(a);
+			if (array instanceof short[] a) return Arrays.hashCode(a);
+			if (array instanceof byte[] a) return Arrays.hashCode(a);
+			if (array instanceof char[] a) return Arrays.hashCode(a);
+			if (array instanceof boolean[] a) return Arrays.hashCode(a);
+			return Arrays.deepHashCode((Object[]) array);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ArrayKey other) || hash != other.hash) return false;
+			Object b = other.array;
+			if (array instanceof double[] a) return b instanceof double[] c && Arrays.equals(a, c);
+			if (array instanceof long[] a) return b instanceof long[] c && Arrays.equals(a, c);
+			if (array instanceof int[] a) return b instanceof int[] c && Arrays.equals(a, c);
+			if (array instanceof float[] a) return b instanceof float[] c && Arrays.equals(a, c);
+			if (array instanceof short[] a) return b instanceof short[] c && Arrays.equals(a, c);
+			if (array instanceof byte[] a) return b instanceof byte[] c && Arrays.equals(a, c);
+			if (array instanceof char[] a) return b instanceof char[] c && Arrays.equals(a, c);
+			if (array instanceof boolean[] a) return b instanceof boolean[] c && Arrays.equals(a, c);
+			return b instanceof Object[] c && Arrays.deepEquals((Object[]) array, c);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	public enum Eviction {
+		/**
+		 * Evict least recently used result.
+		 */
+		LRU,
+		/**
+		 * Evict oldest result, regardless of how often it is used. Lookups are cheaper than LRU because they
+		 * don't reorder entries.
+		 */
+		FIFO;
+	}
+
+	public static class CallCache {
+		private final Map<List<Object>, Object> entries;
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+
+		private CallCache(int maxEntries, Eviction eviction) {
+			this.entries = new LinkedHashMap<>(16, 0.75F, eviction == Eviction.LRU) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+					return size() > maxEntries;
+				}
+			};
+		}
+
+		private Object get(List<Object> key) {
+			Object result;
+			synchronized (entries) {
+				result = entries.get(key);
+			}
+
+			if (result != null) hits.increment();
+			else misses.increment();
+			return result;
+		}
+
+		private void put(List<Object> key, Object result) {
+			synchronized (entries) {
+				entries.put(key, result);
+			}
+		}
+
+		public long hits() { return hits.sum(); }
+		public long misses() { return misses.sum(); }
+
+		public double hitRate() {
+			long hits = hits(), total = hits + misses();
+			return total == 0? 0 : (double) hits / total;
+		}
+
+		public int size() {
+			synchronized (entries) {
+				return entries.size();
+			}
+		}
+
+		public void clear() {
+			synchronized (entries) {
+				entries.clear();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "CallCache[size=" + size() + ", hits=" + hits() + ", misses=" + misses() + "]";
+		}
+	}
+}
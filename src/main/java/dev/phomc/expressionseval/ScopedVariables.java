@@ -0,0 +1,198 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Variables layered over a parent scope. Creating a child scope is O(1): it only allocates slots for the
+ * variables declared in its {@link Layout}, and everything else is looked up in the parent. Slots that are
+ * not set fall through to the parent, so a child scope can be reused with {@link #clear()}.
+ * <p>
+ * Expressions compiled with {@link dev.phomc.expressionseval.expr.VirtualMachineExpression#compile(
+ * dev.phomc.expressionseval.expr.Expression, Layout)} resolve variables to a {@link Slot} once and read them
+ * directly from the scope chain.
+ */
+public class ScopedVariables implements VariablesInterface {
+	private static final Object UNSET = new Object();
+
+	public final Layout layout;
+	public final VariablesInterface parent;
+	private final Object[] values;
+
+	/**
+	 * Create a new scope.
+	 * @param layout Variables declared in this scope.
+	 * @param parent Parent variables. Must be a scope with {@code layout.parent} as its layout if the layout
+	 * has a parent, otherwise it can be any variables interface or {@code null}.
+	 */
+	public ScopedVariables(Layout layout, VariablesInterface parent) {
+		if (layout.parent != null && !(parent instanceof ScopedVariables scope && scope.layout == layout.parent)) {
+			throw new IllegalArgumentException("Parent scope does not match the parent of layout");
+		}
+
+		this.layout = layout;
+		this.parent = parent;
+		this.values = new Object[layout.names.length];
+		Arrays.fill(values, UNSET);
+	}
+
+	public ScopedVariables(Layout layout) {
+		this(layout, null);
+	}
+
+	public ScopedVariables child(Layout childLayout) {
+		return new ScopedVariables(childLayout, this);
+	}
+
+	public ScopedVariables set(String name, Object value) {
+		int slot = layout.slotOf(name);
+		if (slot < 0) throw new IllegalArgumentException("Variable '" + name + "' is not declared in this scope");
+		values[slot] = value;
+		return this;
+	}
+
+	public ScopedVariables set(int slot, Object value) {
+		values[slot] = value;
+		return this;
+	}
+
+	/**
+	 * Unset all variables in this scope, making them fall through to the parent scope again.
+	 */
+	public void clear() {
+		Arrays.fill(values, UNSET);
+	}
+
+	@Override
+	public Object get(String varName) {
+		int slot = layout.slotOf(varName);
+
+		if (slot >= 0) {
+			Object val = values[slot];
+			if (val != UNSET) return val;
+		}
+
+		return parent != null? parent.get(varName) : null;
+	}
+
+	@Override
+	public boolean contains(String varName) {
+		// Declared variables are contained even if unset, like reading them from resolved slots
+		if (layout.slotOf(varName) >= 0) return true;
+		return parent != null && parent.contains(varName);
+	}
+
+	/**
+	 * Obtain variable value from resolved slot. The slot must be resolved from layout of this scope.
+	 * @param slot Resolved slot.
+	 * @return Variable value.
+	 * @see Layout#resolve(String)
+	 */
+	public Object get(Slot slot) {
+		ScopedVariables scope = this;
+		for (int i = 0; i < slot.depth; i++) scope = (ScopedVariables) scope.parent;
+
+		Object val = scope.values[slot.index];
+		if (val != UNSET) return val;
+		return scope.parent != null? scope.parent.get(slot.name) : null;
+	}
+
+	/**
+	 * Names of variables declared in a scope. Layouts are immutable and meant to be created once and shared
+	 * between all scopes of the same shape.
+	 */
+	public static final class Layout {
+		public final Layout parent;
+		private final String[] names;
+		private final Map<String, Integer> slots = new HashMap<>();
+
+		private Layout(Layout parent, String[] names) {
+			this.parent = parent;
+			this.names = names.clone();
+
+			for (int i = 0; i < names.length; i++) {
+				if (slots.put(names[i], i) != null) throw new IllegalArgumentException("Duplicated variable '" + names[i] + "'");
+			}
+		}
+
+		public static Layout of(String... names) {
+			return new Layout(null, names);
+		}
+
+		public Layout child(String... names) {
+			return new Layout(this, names);
+		}
+
+		public int size() {
+			return names.length;
+		}
+
+		public String nameOf(int slot) {
+			return names[slot];
+		}
+
+		public int slotOf(String name) {
+			Integer slot = slots.get(name);
+			return slot != null? slot : -1;
+		}
+
+		/**
+		 * Resolve variable to the nearest layout that declares it.
+		 * @param name Name of variable.
+		 * @return Resolved slot, or {@code null} if none of layouts in this chain declares the variable.
+		 */
+		public Slot resolve(String name) {
+			int depth = 0;
+
+			for (Layout layout = this; layout != null; layout = layout.parent) {
+				int slot = layout.slotOf(name);
+				if (slot >= 0) return new Slot(name, depth, slot);
+				depth++;
+			}
+
+			return null;
+		}
+	}
+
+	public static final class Slot {
+		public final String name;
+		public final int depth;
+		public final int index;
+
+		private Slot(String name, int depth, int index) {
+			this.name = name;
+			this.depth = depth;
+			this.index = index;
+		}
+
+		@Override
+		public String toString() {
+			return name + "@" + depth + ":" + index;
+		}
+	}
+}
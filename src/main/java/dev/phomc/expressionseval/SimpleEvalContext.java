@@ -38,6 +38,7 @@ public interface SimpleEvalContext extends EvalContext {
 	@Override
 	default Object applyOperator(Object a, Operator op, Object b) {
 		if (op == Operator.EQUALS) return Objects.equals(a, b);
+		if (Vectors.isVector(a) || Vectors.isVector(b)) return Vectors.arithmetic(a, op, b);
 		if (op == Operator.GREATER_THAN || op == Operator.GREATER_OR_EQU || op == Operator.LESS_THAN || op == Operator.LESS_OR_EQU) return comparison(a, op, b);
 		if (op == Operator.AND || op == Operator.OR || op == Operator.XOR) return binaryOp(a, op, b);
 		if (op == Operator.ADD || op == Operator.SUBTRACT || op == Operator.MULTIPLY || op == Operator.DIVIDE) return arithmetic(a, op, b);
@@ -173,7 +174,7 @@ public interface SimpleEvalContext extends EvalContext {
 		};
 
 		if (highestLevel == 1) return switch (op) {
-		case ADD -> na.doubleValue() + nb.floatValue();
+		case ADD -> na.doubleValue() + nb.doubleValue();
 		case SUBTRACT -> na.doubleValue() - nb.doubleValue();
 		case MULTIPLY -> na.doubleValue() * nb.doubleValue();
 		case DIVIDE -> na.doubleValue() / nb.doubleValue();
@@ -197,10 +198,7 @@ public interface SimpleEvalContext extends EvalContext {
 
 	@Override
 	default Object propertyOf(Object src, String name, VariablesInterface variables) {
-		if (src == null) {
-			if (variables != null) return variables.get(name);
-			return null;
-		}
+		if (src == null) return variables != null? variables.get(name) : null;
 
 		if (src instanceof Map<?, ?> map) return map.get(name);
 		return null;
@@ -209,6 +207,11 @@ public interface SimpleEvalContext extends EvalContext {
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
 	default Object functionCall(Object function, Object[] parameters) {
+		if (function instanceof Aggregate aggregate) {
+			if (parameters.length != 1) throw new IllegalArgumentException(aggregate.functionName + " expects 1 parameter, got " + parameters.length);
+			return aggregate.apply(parameters[0]);
+		}
+
 		if (function instanceof Runnable run) run.run();
 		if (function instanceof Consumer con && parameters.length >= 1) con.accept(parameters[0]);
 		if (function instanceof BiConsumer con && parameters.length >= 2) con.accept(parameters[0], parameters[1]);
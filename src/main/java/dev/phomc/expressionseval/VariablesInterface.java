@@ -30,7 +30,26 @@ import java.util.Map;
 public interface VariablesInterface {
 	Object get(String varName);
 
+	/**
+	 * @param varName Variable name.
+	 * @return Whether variable is defined, even if its value is {@code null}. By default, variables with
+	 * {@code null} value are treated as undefined.
+	 */
+	default boolean contains(String varName) {
+		return get(varName) != null;
+	}
+
 	static VariablesInterface of(Map<String, Object> map) {
-		return map::get;
+		return new VariablesInterface() {
+			@Override
+			public Object get(String varName) {
+				return map.get(varName);
+			}
+
+			@Override
+			public boolean contains(String varName) {
+				return map.containsKey(varName);
+			}
+		};
 	}
 }
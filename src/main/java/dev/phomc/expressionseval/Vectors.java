@@ -0,0 +1,126 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval;
+
+import java.lang.reflect.Array;
+import java.util.List;
+
+/**
+ * Element-wise arithmetic over {@code double[]}, {@code long[]} and {@code List<Number>} for
+ * {@link SimpleEvalContext}. Vectors are combined element by element, and scalars are combined with every
+ * element. Integer vectors stay {@code long[]} unless combined with floating point numbers or raised to a
+ * power.
+ */
+final class Vectors {
+	private Vectors() {}
+
+	static boolean isVector(Object val) {
+		return val instanceof double[] || val instanceof long[] || val instanceof List<?>;
+	}
+
+	/**
+	 * @param val Vector or number.
+	 * @return {@code double[]}, {@code long[]}, or {@code null} if value is not a vector or number. Numbers
+	 * are converted to arrays with one element.
+	 */
+	static Object normalize(Object val) {
+		if (val instanceof double[] || val instanceof long[]) return val;
+		if (val instanceof Number n) return isIntegral(n)? new long[] { n.longValue() } : new double[] { n.doubleValue() };
+		if (!(val instanceof List<?> list)) return null;
+
+		boolean integral = true;
+
+		for (Object element : list) {
+			if (!(element instanceof Number n)) return null;
+			if (!isIntegral(n)) integral = false;
+		}
+
+		if (integral) {
+			long[] out = new long[list.size()];
+			for (int i = 0; i < out.length; i++) out[i] = ((Number) list.get(i)).longValue();
+			return out;
+		}
+
+		double[] out = new double[list.size()];
+		for (int i = 0; i < out.length; i++) out[i] = ((Number) list.get(i)).doubleValue();
+		return out;
+	}
+
+	static double[] toDoubles(Object normalized) {
+		if (normalized instanceof double[] doubles) return doubles;
+		long[] longs = (long[]) normalized;
+		double[] out = new double[longs.length];
+		for (int i = 0; i < longs.length; i++) out[i] = longs[i];
+		return out;
+	}
+
+	private static boolean isIntegral(Number n) {
+		return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+	}
+
+	static Object arithmetic(Object a, Operator op, Object b) {
+		if (op != Operator.ADD && op != Operator.SUBTRACT && op != Operator.MULTIPLY && op != Operator.DIVIDE && op != Operator.POWER) return null;
+		Object na = normalize(a), nb = normalize(b);
+		if (na == null || nb == null) return null;
+
+		// Scalars are read with stride 0, so the same loop handles vector-vector and vector-scalar
+		int strideA = isVector(a)? 1 : 0, strideB = isVector(b)? 1 : 0;
+		int lengthA = Array.getLength(na), lengthB = Array.getLength(nb);
+		if (strideA == 1 && strideB == 1 && lengthA != lengthB) throw new IllegalArgumentException("Vectors have different lengths: " + lengthA + " and " + lengthB);
+		int length = strideA == 1? lengthA : lengthB;
+
+		if (na instanceof long[] la && nb instanceof long[] lb && op != Operator.POWER) return longs(la, strideA, op, lb, strideB, length);
+		return doubles(toDoubles(na), strideA, op, toDoubles(nb), strideB, length);
+	}
+
+	private static long[] longs(long[] a, int sa, Operator op, long[] b, int sb, int length) {
+		long[] out = new long[length];
+
+		switch (op) {
+		case ADD -> { for (int i = 0; i < length; i++) out[i] = a[i * sa] + b[i * sb]; }
+		case SUBTRACT -> { for (int i = 0; i < length; i++) out[i] = a[i * sa] - b[i * sb]; }
+		case MULTIPLY -> { for (int i = 0; i < length; i++) out[i] = a[i * sa] * b[i * sb]; }
+		case DIVIDE -> { for (int i = 0; i < length; i++) out[i] = a[i * sa] / b[i * sb]; }
+		default -> throw new IllegalArgumentException(op.toString());
+		}
+
+		return out;
+	}
+
+	private static double[] doubles(double[] a, int sa, Operator op, double[] b, int sb, int length) {
+		double[] out = new double[length];
+
+		switch (op) {
+		case ADD -> { for (int i = 0; i < length; i++) out[i] = a[i * sa] + b[i * sb]; }
+		case SUBTRACT -> { for (int i = 0; i < length; i++) out[i] = a[i * sa] - b[i * sb]; }
+		case MULTIPLY -> { for (int i = 0; i < length; i++) out[i] = a[i * sa] * b[i * sb]; }
+		case DIVIDE -> { for (int i = 0; i < length; i++) out[i] = a[i * sa] / b[i * sb]; }
+		case POWER -> { for (int i = 0; i < length; i++) out[i] = Math.pow(a[i * sa], b[i * sb]); }
+		default -> throw new IllegalArgumentException(op.toString());
+		}
+
+		return out;
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.aot;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Compile expression in {@code static final String} constant at build time. For each class with annotated
+ * fields, {@link CompiledExpressionProcessor} generates {@code <ClassName>Expressions} in the same package,
+ * which contains a static method and an {@link dev.phomc.expressionseval.expr.Expression} constant for each
+ * field:
+ * <pre>
+ * public class Rules {
+ *     &#64;CompiledExpression
+ *     public static final String PRICE = "base * 2 + bonus";
+ * }
+ *
+ * RulesExpressions.PRICE(ctx, variables);
+ * RulesExpressions.PRICE_EXPRESSION.eval(ctx, variables);
+ * </pre>
+ * Expressions with syntax errors fail the build.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface CompiledExpression {
+	/**
+	 * @return Name of generated method. Field name will be used if this is empty.
+	 */
+	String name() default "";
+}
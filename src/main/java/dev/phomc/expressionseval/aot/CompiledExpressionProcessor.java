@@ -0,0 +1,136 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.aot;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import dev.phomc.expressionseval.expr.Expression;
+
+/**
+ * Annotation processor for {@link CompiledExpression}. This processor is registered as service, so it runs
+ * automatically when this library is in compile classpath.
+ */
+@SupportedAnnotationTypes("dev.phomc.expressionseval.aot.CompiledExpression")
+public class CompiledExpressionProcessor extends AbstractProcessor {
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Map<TypeElement, List<VariableElement>> fieldsByType = new LinkedHashMap<>();
+
+		for (Element element : roundEnv.getElementsAnnotatedWith(CompiledExpression.class)) {
+			if (element.getKind() != ElementKind.FIELD || !element.getModifiers().containsAll(Set.of(Modifier.STATIC, Modifier.FINAL))) {
+				error(element, "@CompiledExpression can only be used on static final String constants");
+				continue;
+			}
+
+			VariableElement field = (VariableElement) element;
+			if (!(field.getConstantValue() instanceof String)) {
+				error(element, "@CompiledExpression field must be a String constant");
+				continue;
+			}
+
+			fieldsByType.computeIfAbsent((TypeElement) field.getEnclosingElement(), k -> new ArrayList<>()).add(field);
+		}
+
+		for (Map.Entry<TypeElement, List<VariableElement>> entry : fieldsByType.entrySet()) generate(entry.getKey(), entry.getValue());
+		return true;
+	}
+
+	private void generate(TypeElement type, List<VariableElement> fields) {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		String packageName = pkg.isUnnamed()? "" : pkg.getQualifiedName().toString();
+		String className = generatedClassName(type);
+		JavaSourceGenerator generator = new JavaSourceGenerator(packageName, className);
+		boolean failed = false;
+
+		for (VariableElement field : fields) {
+			String source = (String) field.getConstantValue();
+			String name = field.getAnnotation(CompiledExpression.class).name();
+			if (name.isEmpty()) name = field.getSimpleName().toString();
+
+			try {
+				generator.add(name, source, Expression.parse(source));
+			} catch (IllegalArgumentException e) {
+				error(field, e.getMessage());
+				failed = true;
+			} catch (RuntimeException e) {
+				String message = e.getMessage() != null? e.getMessage() : e.getClass().getSimpleName();
+				error(field, "Invalid expression '" + source + "': " + message);
+				failed = true;
+			}
+		}
+
+		if (failed) return;
+
+		try {
+			JavaFileObject file = processingEnv.getFiler().createSourceFile(generator.getQualifiedName(), fields.toArray(Element[]::new));
+			try (Writer writer = file.openWriter()) {
+				writer.write(generator.generate());
+			}
+		} catch (IOException | RuntimeException e) {
+			error(type, "Failed to generate " + generator.getQualifiedName() + ": " + e.getMessage());
+		}
+	}
+
+	private static String generatedClassName(TypeElement type) {
+		// Outer.Inner -> Outer_InnerExpressions
+		StringBuilder name = new StringBuilder(type.getSimpleName());
+		Element enclosing = type.getEnclosingElement();
+
+		while (enclosing instanceof TypeElement outer) {
+			name.insert(0, outer.getSimpleName() + "_");
+			enclosing = outer.getEnclosingElement();
+		}
+
+		return name.append("Expressions").toString();
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.aot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.SourceVersion;
+
+import dev.phomc.expressionseval.expr.Constant;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.FunctionExpression;
+import dev.phomc.expressionseval.expr.OperatorExpression;
+import dev.phomc.expressionseval.expr.Symbol;
+
+/**
+ * Generate Java source that evaluates expressions with straight-line calls to
+ * {@link dev.phomc.expressionseval.EvalContext}. Results are the same as evaluating the expression tree.
+ */
+public class JavaSourceGenerator {
+	private final String packageName;
+	private final String className;
+	private final Map<String, String> sources = new LinkedHashMap<>();
+	private final Map<String, Expression> expressions = new LinkedHashMap<>();
+
+	/**
+	 * @param packageName Package of generated class, or empty string for default package.
+	 * @param className Simple name of generated class.
+	 */
+	public JavaSourceGenerator(String packageName, String className) {
+		this.packageName = packageName;
+		this.className = className;
+	}
+
+	/**
+	 * Add expression to generated class.
+	 * @param name Name of generated method. Constant with {@code _EXPRESSION} suffix will also be generated.
+	 * @param source Expression string, only used for documentation.
+	 * @param expr Parsed expression.
+	 * @return this.
+	 */
+	public JavaSourceGenerator add(String name, String source, Expression expr) {
+		if (!SourceVersion.isIdentifier(name) || SourceVersion.isKeyword(name)) throw new IllegalArgumentException("'" + name + "' is not a valid method name");
+		if (expressions.containsKey(name)) throw new IllegalArgumentException("Duplicated expression name '" + name + "'");
+		sources.put(name, source);
+		expressions.put(name, expr);
+		return this;
+	}
+
+	public String getQualifiedName() {
+		return packageName.isEmpty()? className : packageName + "." + className;
+	}
+
+	public String generate() {
+		StringBuilder out = new StringBuilder();
+		List<String> constants = new ArrayList<>();
+		StringBuilder methods = new StringBuilder();
+
+		for (Map.Entry<String, Expression> entry : expressions.entrySet()) {
+			String name = entry.getKey();
+			String source = sources.get(name);
+			Method method = new Method(constants);
+			String result = method.emit(entry.getValue());
+
+			if (source != null) methods.append("\t/**\n\t * <code>").append(escapeJavadoc(source)).append("</code>\n\t */\n");
+			methods.append("\tpublic static Object ").append(name).append("(EvalContext ctx, VariablesInterface variables) {\n");
+			methods.append(method.body);
+			methods.append("\t\treturn ").append(result).append(";\n");
+			methods.append("\t}\n\n");
+			methods.append("\tpublic static final Expression ").append(name).append("_EXPRESSION = new Expression() {\n");
+			methods.append("\t\t@Override\n");
+			methods.append("\t\tpublic Object eval(EvalContext ctx, VariablesInterface variables) {\n");
+			methods.append("\t\t\treturn ").append(name).append("(ctx, variables);\n");
+			methods.append("\t\t}\n\n");
+			methods.append("\t\t@Override\n");
+			methods.append("\t\tpublic String toString() {\n");
+			methods.append("\t\t\treturn ").append(source != null? literal(source) : literal(name)).append(";\n");
+			methods.append("\t\t}\n");
+			methods.append("\t};\n\n");
+		}
+
+		if (!packageName.isEmpty()) out.append("package ").append(packageName).append(";\n\n");
+		out.append("import dev.phomc.expressionseval.EvalContext;\n");
+		out.append("import dev.phomc.expressionseval.Operator;\n");
+		out.append("import dev.phomc.expressionseval.VariablesInterface;\n");
+		out.append("import dev.phomc.expressionseval.expr.Expression;\n\n");
+		out.append("/**\n * Generated by ").append(JavaSourceGenerator.class.getName()).append(", do not edit.\n */\n");
+		out.append("public final class ").append(className).append(" {\n");
+		for (int i = 0; i < constants.size(); i++) out.append("\tprivate static final Object C").append(i).append(" = ").append(constants.get(i)).append(";\n");
+		if (!constants.isEmpty()) out.append('\n');
+		out.append("\tprivate ").append(className).append("() {}\n\n");
+		out.append(methods, 0, methods.length() - 1);
+		out.append("}\n");
+		return out.toString();
+	}
+
+	private static class Method {
+		private final List<String> constants;
+		private final StringBuilder body = new StringBuilder();
+		private int locals = 0;
+
+		public Method(List<String> constants) {
+			this.constants = constants;
+		}
+
+		private String local(String value) {
+			String name = "v" + (locals++);
+			body.append("\t\tObject ").append(name).append(" = ").append(value).append(";\n");
+			return name;
+		}
+
+		/**
+		 * Emit statements for expression.
+		 * @param expr Expression.
+		 * @return Java expression that holds the result.
+		 */
+		public String emit(Expression expr) {
+			if (expr instanceof Constant c) {
+				if (c.val == null) return "null";
+				String literal = literal(c.val);
+				int index = constants.indexOf(literal);
+
+				if (index == -1) {
+					index = constants.size();
+					constants.add(literal);
+				}
+
+				return "C" + index;
+			}
+
+			if (expr instanceof Symbol sym) {
+				String target = emit(sym.target);
+				return local("ctx.propertyOf(" + target + ", " + literal(sym.name) + ", variables)");
+			}
+
+			if (expr instanceof OperatorExpression op) {
+				String a = emit(op.a);
+				String b = emit(op.b);
+				return local("ctx.applyOperator(" + a + ", Operator." + op.operator.name() + ", " + b + ")");
+			}
+
+			if (expr instanceof FunctionExpression func) {
+				// Same order as FunctionExpression.eval(): parameters first, then function
+				String[] params = new String[func.parameters.length];
+				for (int i = 0; i < params.length; i++) params[i] = emit(func.parameters[i]);
+				String target = emit(func.target);
+				return local("ctx.functionCall(" + target + ", new Object[] { " + String.join(", ", params) + " })");
+			}
+
+			throw new IllegalArgumentException("Cannot generate source for " + expr.getClass().getName());
+		}
+	}
+
+	private static String literal(Object val) {
+		if (val instanceof Integer i) return Integer.toString(i);
+		if (val instanceof Long l) return l + "L";
+		if (val instanceof Float f) return Float.isFinite(f)? f + "F" : "Float.intBitsToFloat(" + Float.floatToRawIntBits(f) + ")";
+		if (val instanceof Double d) return Double.isFinite(d)? d + "D" : "Double.longBitsToDouble(" + Double.doubleToRawLongBits(d) + "L)";
+		if (val instanceof Short s) return "(short) " + s;
+		if (val instanceof Byte b) return "(byte) " + b;
+		if (val instanceof Boolean b) return b.toString();
+		if (val instanceof Character c) return "'" + escape(c.toString()) + "'";
+		if (val instanceof String s) return "\"" + escape(s) + "\"";
+		throw new IllegalArgumentException("Cannot generate constant of type " + val.getClass().getName());
+	}
+
+	private static String escape(String s) {
+		StringBuilder out = new StringBuilder();
+
+		for (char c : s.toCharArray()) {
+			switch (c) {
+			case '"' -> out.append("\\\"");
+			case '\'' -> out.append("\\'");
+			case '\\' -> out.append("\\\\");
+			case '\n' -> out.append("\\n");
+			case '\r' -> out.append("\\r");
+			case '\t' -> out.append("\\t");
+			default -> {
+				if (c < 0x20 || c > 0x7E) out.append(String.format("\\u%04x", (int) c));
+				else out.append(c);
+			}
+			}
+		}
+
+		return out.toString();
+	}
+
+	/**
+	 * Escape text for HTML in doc comment. Entities are not decoded inside {@code {@code}} tags, so source is
+	 * written in {@code <code>} element instead. Backslashes are escaped because javac decodes unicode escapes
+	 * in comments too.
+	 */
+	static String escapeJavadoc(String s) {
+		StringBuilder out = new StringBuilder(s.length());
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+
+			switch (c) {
+			case '&' -> out.append("&amp;");
+			case '<' -> out.append("&lt;");
+			case '>' -> out.append("&gt;");
+			case '@' -> out.append("&#64;");
+			case '{' -> out.append("&#123;");
+			case '}' -> out.append("&#125;");
+			case '/' -> out.append(i > 0 && s.charAt(i - 1) == '*'? "&#47;" : "/");
+			case '\\' -> out.append("&#92;");
+			case '\n', '\r' -> out.append(' ');
+			default -> out.append(c);
+			}
+		}
+
+		return out.toString();
+	}
+}
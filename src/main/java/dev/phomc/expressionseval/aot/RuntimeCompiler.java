@@ -0,0 +1,168 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.aot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import dev.phomc.expressionseval.expr.Expression;
+
+/**
+ * Compile expressions to JVM bytecode at runtime, by compiling the output of {@link JavaSourceGenerator} with
+ * system Java compiler. Each expression is loaded in its own class loader, so generated classes are unloaded
+ * together with their expressions. The compiler is only available when running on JDK, see
+ * {@link #isAvailable()}.
+ */
+public final class RuntimeCompiler {
+	private static final String PACKAGE = "dev.phomc.expressionseval.aot.generated";
+	private static final String NAME = "expr";
+	private static final AtomicLong COUNTER = new AtomicLong();
+
+	private RuntimeCompiler() {}
+
+	public static boolean isAvailable() {
+		return ToolProvider.getSystemJavaCompiler() != null;
+	}
+
+	/**
+	 * @param expr Expression tree.
+	 * @param source Expression string, only used for {@link Object#toString()}, or {@code null}.
+	 * @return Compiled expression.
+	 * @throws IllegalStateException if compiler is not available or compilation failed.
+	 * @throws IllegalArgumentException if expression contains constants that can't be written in Java source.
+	 */
+	public static Expression compile(Expression expr, String source) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) throw new IllegalStateException("Java compiler is not available, are you running on JRE?");
+
+		String className = "Expression" + COUNTER.incrementAndGet();
+		JavaSourceGenerator generator = new JavaSourceGenerator(PACKAGE, className).add(NAME, source, expr);
+		String javaSource = generator.generate();
+
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		List<String> options = List.of("-classpath", classpath(), "-proc:none", "-g:none");
+
+		// Closing forwarding file manager also closes the standard file manager and its open archives
+		try (MemoryFileManager fileManager = new MemoryFileManager(compiler.getStandardFileManager(diagnostics, null, null))) {
+			boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, List.of(new SourceFile(generator.getQualifiedName(), javaSource))).call();
+			if (!success) throw new IllegalStateException("Failed to compile expression: " + diagnostics.getDiagnostics());
+
+			Class<?> type = new MemoryClassLoader(fileManager.classes).loadClass(generator.getQualifiedName());
+			return (Expression) type.getField(NAME + "_EXPRESSION").get(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Failed to load compiled expression", e);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to close compiler file manager", e);
+		}
+	}
+
+	private static String classpath() {
+		String classpath = System.getProperty("java.class.path", "");
+
+		try {
+			String library = new File(Expression.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+			return classpath.isEmpty()? library : library + File.pathSeparator + classpath;
+		} catch (Exception e) {
+			return classpath;
+		}
+	}
+
+	private static class SourceFile extends SimpleJavaFileObject {
+		private final String source;
+
+		SourceFile(String className, String source) {
+			super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			this.source = source;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+	}
+
+	private static class ClassFile extends SimpleJavaFileObject {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		ClassFile(String className) {
+			super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+		}
+
+		@Override
+		public OutputStream openOutputStream() {
+			return bytes;
+		}
+	}
+
+	private static class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+		final Map<String, ClassFile> classes = new HashMap<>();
+
+		MemoryFileManager(JavaFileManager fileManager) {
+			super(fileManager);
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+			if (location != StandardLocation.CLASS_OUTPUT || kind != JavaFileObject.Kind.CLASS) throw new IllegalArgumentException("Unexpected output " + className);
+			ClassFile file = new ClassFile(className);
+			classes.put(className, file);
+			return file;
+		}
+	}
+
+	private static class MemoryClassLoader extends ClassLoader {
+		private final Map<String, ClassFile> classes;
+
+		MemoryClassLoader(Map<String, ClassFile> classes) {
+			super(RuntimeCompiler.class.getClassLoader());
+			this.classes = classes;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			ClassFile file = classes.get(name);
+			if (file == null) throw new ClassNotFoundException(name);
+			byte[] bytes = file.bytes.toByteArray();
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
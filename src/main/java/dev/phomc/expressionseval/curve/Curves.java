@@ -0,0 +1,100 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.curve;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.ScopedVariables;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.FunctionExpression;
+import dev.phomc.expressionseval.expr.OperatorExpression;
+import dev.phomc.expressionseval.expr.Symbol;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+
+/**
+ * Sample expressions of a single variable over a range.
+ */
+public final class Curves {
+	private Curves() {}
+
+	/**
+	 * Sample expression at evenly spaced points from {@code from} to {@code to} (inclusive).
+	 * @param expr Expression to sample. Parsed expressions are compiled with the variable resolved to a slot, and
+	 * compile errors are thrown to caller.
+	 * @param ctx Evaluation context.
+	 * @param variables Other variables, or {@code null}.
+	 * @param variable Name of the variable to vary.
+	 * @param from Start of range.
+	 * @param to End of range.
+	 * @param out Output array. Its length is the number of samples. Results that are not numbers are stored
+	 * as {@code NaN}.
+	 * @return The output array.
+	 */
+	public static double[] sample(Expression expr, EvalContext ctx, VariablesInterface variables, String variable, double from, double to, double[] out) {
+		ScopedVariables.Layout layout = ScopedVariables.Layout.of(variable);
+		Expression compiled = prepare(expr, layout);
+		ScopedVariables scope = new ScopedVariables(layout, variables);
+		double step = out.length > 1? (to - from) / (out.length - 1) : 0;
+
+		for (int i = 0; i < out.length; i++) {
+			scope.set(0, from + step * i);
+			out[i] = toDouble(compiled.eval(ctx, scope));
+		}
+
+		return out;
+	}
+
+	public static double[] sample(Expression expr, EvalContext ctx, VariablesInterface variables, String variable, double from, double to, int count) {
+		return sample(expr, ctx, variables, variable, from, to, new double[count]);
+	}
+
+	/**
+	 * Same as {@link #sample(Expression, EvalContext, VariablesInterface, String, double, double, double[])},
+	 * but stores results as {@code float}.
+	 */
+	public static float[] sample(Expression expr, EvalContext ctx, VariablesInterface variables, String variable, double from, double to, float[] out) {
+		ScopedVariables.Layout layout = ScopedVariables.Layout.of(variable);
+		Expression compiled = prepare(expr, layout);
+		ScopedVariables scope = new ScopedVariables(layout, variables);
+		double step = out.length > 1? (to - from) / (out.length - 1) : 0;
+
+		for (int i = 0; i < out.length; i++) {
+			scope.set(0, from + step * i);
+			out[i] = (float) toDouble(compiled.eval(ctx, scope));
+		}
+
+		return out;
+	}
+
+	private static Expression prepare(Expression expr, ScopedVariables.Layout layout) {
+		// Other expressions (compiled, lookup tables...) are evaluated as they are, they still work with scopes
+		boolean tree = expr instanceof Symbol || expr instanceof OperatorExpression || expr instanceof FunctionExpression;
+		return tree? VirtualMachineExpression.compile(expr, layout) : expr;
+	}
+
+	static double toDouble(Object val) {
+		return val instanceof Number n? n.doubleValue() : Double.NaN;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.curve;
+
+import java.util.function.DoubleUnaryOperator;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.Expression;
+
+/**
+ * Precomputed curve of a single variable expression. Values between sample points are linearly interpolated,
+ * and values outside of range are clamped to the nearest end. Only use this for pure expressions: other
+ * variables and functions are evaluated once while building the table.
+ */
+public class LookupTable extends Expression implements DoubleUnaryOperator {
+	public final String variable;
+	public final double from, to;
+	private final double[] values;
+	private final double inverseStep;
+
+	/**
+	 * @param variable Name of input variable.
+	 * @param from Start of range.
+	 * @param to End of range.
+	 * @param values Values at evenly spaced points from {@code from} to {@code to}. The array is copied.
+	 */
+	public LookupTable(String variable, double from, double to, double[] values) {
+		if (values.length < 2) throw new IllegalArgumentException("Lookup table needs at least 2 values");
+		if (!(to > from)) throw new IllegalArgumentException("Empty range: " + from + " to " + to);
+		this.variable = variable;
+		this.from = from;
+		this.to = to;
+		this.values = values.clone();
+		this.inverseStep = (values.length - 1) / (to - from);
+	}
+
+	/**
+	 * Build lookup table by sampling expression.
+	 * @param expr Expression to sample.
+	 * @param ctx Evaluation context.
+	 * @param variables Other variables, or {@code null}.
+	 * @param variable Name of input variable.
+	 * @param from Start of range.
+	 * @param to End of range.
+	 * @param resolution Number of sample points.
+	 * @return Lookup table.
+	 */
+	public static LookupTable of(Expression expr, EvalContext ctx, VariablesInterface variables, String variable, double from, double to, int resolution) {
+		return new LookupTable(variable, from, to, Curves.sample(expr, ctx, variables, variable, from, to, resolution));
+	}
+
+	@Override
+	public double applyAsDouble(double t) {
+		if (Double.isNaN(t)) return Double.NaN;
+		if (t <= from) return values[0];
+		if (t >= to) return values[values.length - 1];
+
+		double pos = (t - from) * inverseStep;
+		int index = (int) pos;
+		if (index >= values.length - 1) return values[values.length - 1];
+		double frac = pos - index;
+		return values[index] + (values[index + 1] - values[index]) * frac;
+	}
+
+	/**
+	 * Evaluate by reading the input variable and interpolating.
+	 * @return Interpolated value as {@link Double}, or {@code null} if input variable is not a number.
+	 */
+	@Override
+	public Object eval(EvalContext ctx, VariablesInterface variables) {
+		Object input = ctx.propertyOf(null, variable, variables);
+		if (!(input instanceof Number n)) return null;
+		return applyAsDouble(n.doubleValue());
+	}
+
+	public int resolution() {
+		return values.length;
+	}
+
+	@Override
+	public String toString() {
+		return "lut[" + variable + " in " + from + ".." + to + ", " + values.length + " points]";
+	}
+}
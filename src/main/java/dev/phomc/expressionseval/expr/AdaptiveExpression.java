@@ -0,0 +1,174 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.aot.RuntimeCompiler;
+
+/**
+ * Expression that starts as expression tree and promotes itself to faster tiers as it gets evaluated more:
+ * to {@link VirtualMachineExpression}, then to JVM bytecode with {@link RuntimeCompiler}. Promotion runs on
+ * executor, and the new tier is swapped in atomically, so evaluating never waits for compilation. If bytecode
+ * can't be compiled (running on JRE, for example), expression stays in virtual machine tier.
+ * <p>
+ * Evaluations are counted with {@link LongAdder}, so threads don't contend on the counter, and counting stops
+ * after the last promotion. Thresholds of at least {@value #SAMPLED_THRESHOLD} evaluations are checked on a
+ * sample of evaluations, so promotion may happen a few evaluations late.
+ */
+public class AdaptiveExpression extends Expression {
+	public static final int DEFAULT_VM_THRESHOLD = 100;
+	public static final int DEFAULT_COMPILE_THRESHOLD = 10_000;
+
+	public enum Tier {
+		TREE, VIRTUAL_MACHINE, COMPILED
+	}
+
+	private record Stage(Tier tier, Expression expr, int nextThreshold) {}
+
+	private static final int NEVER = Integer.MAX_VALUE;
+	private static final int SAMPLED_THRESHOLD = 1024;
+	private static final int SAMPLE_MASK = 63;
+
+	public final Expression tree;
+	public final String source;
+	private final int compileThreshold;
+	private final Executor executor;
+	private final AtomicBoolean promoting = new AtomicBoolean();
+	private volatile Stage stage;
+	private final LongAdder evaluations = new LongAdder();
+
+	/**
+	 * @param tree Expression tree.
+	 * @param source Expression string, or {@code null}.
+	 * @param vmThreshold Number of evaluations before compiling to virtual machine code.
+	 * @param compileThreshold Number of evaluations before compiling to JVM bytecode, or
+	 * {@link Integer#MAX_VALUE} to never compile.
+	 * @param executor Executor to compile on.
+	 */
+	public AdaptiveExpression(Expression tree, String source, int vmThreshold, int compileThreshold, Executor executor) {
+		if (vmThreshold > compileThreshold) throw new IllegalArgumentException("vmThreshold must not be greater than compileThreshold");
+		this.tree = tree;
+		this.source = source;
+		this.compileThreshold = compileThreshold;
+		this.executor = executor;
+		this.stage = new Stage(Tier.TREE, tree, vmThreshold);
+	}
+
+	/**
+	 * Create expression that compiles on a shared daemon thread, so compiling doesn't occupy threads of
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+	 * @param source Expression string.
+	 */
+	public AdaptiveExpression(String source) {
+		this(parse(source), source, DEFAULT_VM_THRESHOLD, DEFAULT_COMPILE_THRESHOLD, DefaultExecutor.INSTANCE);
+	}
+
+	@Override
+	public Object eval(EvalContext ctx, VariablesInterface variables) {
+		Stage stage = this.stage;
+
+		if (stage.nextThreshold != NEVER) {
+			evaluations.increment();
+			if (shouldCheck(stage.nextThreshold) && evaluations.sum() >= stage.nextThreshold) promote(stage);
+		}
+
+		return stage.expr.eval(ctx, variables);
+	}
+
+	private static boolean shouldCheck(int threshold) {
+		// Summing reads counter cells of all threads, so large thresholds are checked on a sample
+		return threshold < SAMPLED_THRESHOLD || (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0;
+	}
+
+	/**
+	 * Asynchronous evaluation always uses expression tree, which is what compiled tiers are evaluated with.
+	 */
+	@Override
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables, Executor executor) {
+		return tree.evalAsync(ctx, variables, executor);
+	}
+
+	private void promote(Stage from) {
+		// Plain read first, so evaluations don't contend on CAS while compiling
+		if (promoting.get() || !promoting.compareAndSet(false, true)) return;
+
+		try {
+			executor.execute(() -> {
+				try {
+					if (stage == from) stage = next(from);
+				} finally {
+					promoting.set(false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			promoting.set(false);
+		}
+	}
+
+	private Stage next(Stage from) {
+		if (from.tier == Tier.TREE) {
+			return new Stage(Tier.VIRTUAL_MACHINE, VirtualMachineExpression.compile(tree, null, source), compileThreshold);
+		}
+
+		try {
+			return new Stage(Tier.COMPILED, RuntimeCompiler.compile(tree, source), NEVER);
+		} catch (RuntimeException e) {
+			return new Stage(from.tier, from.expr, NEVER);
+		}
+	}
+
+	public Tier getTier() {
+		return stage.tier;
+	}
+
+	/**
+	 * @return Number of evaluations, until the last promotion.
+	 */
+	public long getEvaluations() {
+		return evaluations.sum();
+	}
+
+	@Override
+	public String toString() {
+		return source != null? source : tree.toString();
+	}
+
+	private static final class DefaultExecutor {
+		static final Executor INSTANCE = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "AdaptiveExpression");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
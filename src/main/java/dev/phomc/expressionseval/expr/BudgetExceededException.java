@@ -0,0 +1,66 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+/**
+ * Thrown when evaluation exceeds its {@link EvalBudget}, or when expression is rejected by
+ * {@link CostEstimator} before running.
+ */
+public class BudgetExceededException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public enum Kind {
+		INSTRUCTIONS, DEADLINE, ESTIMATED_COST
+	}
+
+	private final Kind kind;
+	private final long limit;
+	private final long actual;
+
+	public BudgetExceededException(Kind kind, long limit, long actual, String message) {
+		super(message);
+		this.kind = kind;
+		this.limit = limit;
+		this.actual = actual;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return Exceeded limit: number of instructions, nanoseconds or cost.
+	 */
+	public long getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return Value that exceeded the limit, in the same unit as {@link #getLimit()}.
+	 */
+	public long getActual() {
+		return actual;
+	}
+}
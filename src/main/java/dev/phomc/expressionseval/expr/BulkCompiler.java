@@ -0,0 +1,156 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parse and compile many expressions in parallel. Identical sources are compiled once and share the same
+ * compiled expression. Failures are collected per source instead of aborting the whole batch.
+ * <pre>{@code
+ * BulkCompiler.Result result = BulkCompiler.compileAll(rulePack);
+ * result.errors().forEach((source, error) -> log.warn("Invalid rule {}: {}", source, error.getMessage()));
+ * VirtualMachineExpression rule = result.get(source);
+ * }</pre>
+ */
+public final class BulkCompiler {
+	/**
+	 * Number of sources compiled by a single task without splitting further.
+	 */
+	static final int BATCH_SIZE = 64;
+
+	private BulkCompiler() {}
+
+	/**
+	 * Compile expressions on common pool.
+	 * @param sources Expression strings.
+	 * @return Compiled expressions and errors.
+	 */
+	public static Result compileAll(Collection<String> sources) {
+		return compileAll(sources, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param sources Expression strings.
+	 * @param pool Pool to compile on.
+	 * @return Compiled expressions and errors.
+	 */
+	public static Result compileAll(Collection<String> sources, ForkJoinPool pool) {
+		List<String> unique = new ArrayList<>(new LinkedHashSet<>(sources));
+		Object[] results = new Object[unique.size()];
+		pool.invoke(new CompileTask(unique, results, 0, unique.size()));
+
+		Map<String, VirtualMachineExpression> compiled = new LinkedHashMap<>();
+		Map<String, RuntimeException> errors = new LinkedHashMap<>();
+
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] instanceof VirtualMachineExpression vm) compiled.put(unique.get(i), vm);
+			else errors.put(unique.get(i), (RuntimeException) results[i]);
+		}
+
+		return new Result(compiled, errors);
+	}
+
+	private static class CompileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> sources;
+		private final Object[] results;
+		private final int from, to;
+
+		CompileTask(List<String> sources, Object[] results, int from, int to) {
+			this.sources = sources;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > BATCH_SIZE) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new CompileTask(sources, results, from, middle), new CompileTask(sources, results, middle, to));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				try {
+					results[i] = Expression.compile(sources.get(i));
+				} catch (RuntimeException e) {
+					results[i] = e;
+				}
+			}
+		}
+	}
+
+	public static final class Result {
+		private final Map<String, VirtualMachineExpression> compiled;
+		private final Map<String, RuntimeException> errors;
+
+		private Result(Map<String, VirtualMachineExpression> compiled, Map<String, RuntimeException> errors) {
+			this.compiled = Collections.unmodifiableMap(compiled);
+			this.errors = Collections.unmodifiableMap(errors);
+		}
+
+		/**
+		 * @param source Expression string.
+		 * @return Compiled expression, or {@code null} if it failed to compile or wasn't in the batch.
+		 */
+		public VirtualMachineExpression get(String source) {
+			return compiled.get(source);
+		}
+
+		/**
+		 * @return Compiled expressions by source, in the order they first appeared.
+		 */
+		public Map<String, VirtualMachineExpression> compiled() {
+			return compiled;
+		}
+
+		/**
+		 * @return Errors by source, in the order they first appeared.
+		 */
+		public Map<String, RuntimeException> errors() {
+			return errors;
+		}
+
+		public boolean hasErrors() {
+			return !errors.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return "BulkCompiler.Result[compiled=" + compiled.size() + ", errors=" + errors.size() + "]";
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+
+/**
+ * Expression that caches its results by the values it reads. The read set (property paths like
+ * {@code order.customer.tier} and functions, see {@link ExpressionAnalysis}) is computed when wrapping, and
+ * each evaluation reads only these values to look up the bounded LRU cache. Repeated evaluations with the
+ * same values skip the expression entirely, even if the rest of the variables are different.
+ * <p>
+ * Results are only cached when every called function is pure according to {@link EvalContext#isPure(Object)},
+ * unless the expression is declared pure when wrapping. Values are compared with
+ * {@link Object#equals(Object)}, so don't mutate values after they were used as keys.
+ */
+public class CachedExpression extends Expression {
+	private static final Object NULL = new Object();
+
+	public final Expression expr;
+	public final int maxEntries;
+	private final String[][] readSet;
+	private final int[] functions;
+	private final boolean assumePure;
+	private final boolean computedFunctions;
+	private final boolean cacheable;
+	private final Map<List<Object>, Object> entries;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder bypasses = new LongAdder();
+
+	/**
+	 * @param expr Expression tree or compiled expression.
+	 * @param maxEntries Maximum number of cached results.
+	 * @param assumePure Cache results even if functions are not known to be pure.
+	 */
+	public CachedExpression(Expression expr, int maxEntries, boolean assumePure) {
+		if (maxEntries < 1) throw new IllegalArgumentException("Cache size must be at least 1");
+		this.expr = expr;
+		this.maxEntries = maxEntries;
+
+		ExpressionAnalysis analysis = ExpressionAnalysis.of(expr);
+		List<List<String>> paths = analysis.paths();
+		this.readSet = paths.stream().map(path -> path.toArray(String[]::new)).toArray(String[][]::new);
+		this.functions = analysis.functionPaths().stream().mapToInt(paths::indexOf).toArray();
+		this.assumePure = assumePure;
+		this.computedFunctions = analysis.hasComputedFunctions();
+		this.cacheable = analysis.isComplete();
+
+		this.entries = new LinkedHashMap<>(16, 0.75F, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	public CachedExpression(Expression expr, int maxEntries) {
+		this(expr, maxEntries, false);
+	}
+
+	@Override
+	public Object eval(EvalContext ctx, VariablesInterface variables) {
+		List<Object> key = keyOf(ctx, variables);
+		if (key == null) return expr.eval(ctx, variables);
+
+		Object result = lookup(key);
+		if (result != null) return result == NULL? null : result;
+
+		result = expr.eval(ctx, variables);
+		store(key, result);
+		return result;
+	}
+
+	/**
+	 * Cached results complete immediately. Otherwise, wrapped expression is evaluated asynchronously, and its
+	 * result is cached when it completes.
+	 */
+	@Override
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables, Executor executor) {
+		List<Object> key;
+		Object result;
+
+		try {
+			key = keyOf(ctx, variables);
+			result = key != null? lookup(key) : null;
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+
+		if (key == null) return expr.evalAsync(ctx, variables, executor);
+		if (result != null) return CompletableFuture.completedFuture(result == NULL? null : result);
+
+		return expr.evalAsync(ctx, variables, executor).thenApply(value -> {
+			store(key, value);
+			return value;
+		});
+	}
+
+	/**
+	 * @return Values of read set, or {@code null} if evaluation bypasses the cache.
+	 */
+	private List<Object> keyOf(EvalContext ctx, VariablesInterface variables) {
+		if (!cacheable || computedFunctions && !assumePure) {
+			bypasses.increment();
+			return null;
+		}
+
+		Object[] values = new Object[readSet.length];
+
+		for (int i = 0; i < values.length; i++) {
+			Object val = null;
+			for (String name : readSet[i]) val = ctx.propertyOf(val, name, variables);
+			values[i] = val;
+		}
+
+		if (!assumePure) {
+			for (int i : functions) {
+				if (!ctx.isPure(values[i])) {
+					bypasses.increment();
+					return null;
+				}
+			}
+		}
+
+		return Arrays.asList(values);
+	}
+
+	private Object lookup(List<Object> key) {
+		Object result;
+
+		synchronized (entries) {
+			result = entries.get(key);
+		}
+
+		if (result != null) hits.increment();
+		else misses.increment();
+		return result;
+	}
+
+	private void store(List<Object> key, Object result) {
+		synchronized (entries) {
+			entries.put(key, result == null? NULL : result);
+		}
+	}
+
+	/**
+	 * @return Property paths that results are keyed by, such as {@code [order, customer, tier]}.
+	 */
+	public List<List<String>> readSet() {
+		List<List<String>> paths = new ArrayList<>();
+		for (String[] path : readSet) paths.add(List.of(path));
+		return paths;
+	}
+
+	public long hits() { return hits.sum(); }
+	public long misses() { return misses.sum(); }
+
+	/**
+	 * @return Number of evaluations that skipped the cache because a called function is not pure, or because
+	 * the read set of expression is unknown.
+	 */
+	public long bypasses() { return bypasses.sum(); }
+
+	public double hitRate() {
+		long hits = hits(), total = hits + misses();
+		return total == 0? 0 : (double) hits / total;
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CachedExpression[" + expr + ", size=" + size() + ", hits=" + hits() + ", misses=" + misses() + ", bypasses=" + bypasses() + "]";
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.VariablesInterface;
+
+/**
+ * Expression stored as postfix program in parallel primitive arrays, instead of a graph of node objects.
+ * Constants and symbol names are stored once in pools. This representation uses several times less memory
+ * than expression tree or {@link VirtualMachineExpression}, which helps with very large rule sets.
+ */
+public class CompactExpression extends Expression {
+	private static final byte CONST = 0, ROOT = 1, PROPERTY = 2, OPERATOR = 3, CALL = 4;
+	private static final Operator[] OPERATORS = Operator.values();
+
+	private final byte[] ops;
+	private final int[] args;
+	private final Object[] constants;
+	private final String[] names;
+
+	private CompactExpression(byte[] ops, int[] args, Object[] constants, String[] names) {
+		this.ops = ops;
+		this.args = args;
+		this.constants = constants;
+		this.names = names;
+	}
+
+	public static CompactExpression of(Expression expr) {
+		Builder builder = new Builder();
+		builder.add(expr);
+		return builder.build();
+	}
+
+	@Override
+	public Object eval(EvalContext ctx, VariablesInterface variables) {
+		VirtualMachineExpression.Frame stack = VirtualMachineExpression.Frame.acquire();
+
+		try {
+			for (int i = 0; i < ops.length; i++) {
+				int arg = args[i];
+
+				switch (ops[i]) {
+				case CONST -> stack.push(constants[arg]);
+				case ROOT -> stack.push(ctx.propertyOf(null, names[arg], variables));
+				case PROPERTY -> stack.push(ctx.propertyOf(stack.pop(), names[arg], variables));
+				case OPERATOR -> {
+					Object b = stack.pop();
+					Object a = stack.pop();
+					stack.push(ctx.applyOperator(a, OPERATORS[arg], b));
+				}
+				case CALL -> {
+					Object[] parameters = new Object[arg];
+					for (int j = arg - 1; j >= 0; j--) parameters[j] = stack.pop();
+					stack.push(ctx.functionCall(stack.pop(), parameters));
+				}
+				default -> throw new IllegalStateException("Unknown op " + ops[i]);
+				}
+			}
+
+			return stack.isEmpty()? null : stack.pop();
+		} finally {
+			stack.release();
+		}
+	}
+
+	/**
+	 * Functions may return {@link java.util.concurrent.CompletionStage}, so expression is converted to tree,
+	 * which is then evaluated asynchronously. The tree is not kept, to keep this expression compact.
+	 * @see Expression#evalAsync(EvalContext, VariablesInterface, Executor)
+	 */
+	@Override
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables, Executor executor) {
+		return toExpression().evalAsync(ctx, variables, executor);
+	}
+
+	/**
+	 * @return Expression tree that is equivalent to this expression.
+	 */
+	public Expression toExpression() {
+		Deque<Expression> stack = new ArrayDeque<>();
+
+		for (int i = 0; i < ops.length; i++) {
+			int arg = args[i];
+
+			switch (ops[i]) {
+			case CONST -> stack.push(constants[arg] == null? Constant.NULL : new Constant(constants[arg]));
+			case ROOT -> stack.push(new Symbol(Constant.NULL, names[arg]));
+			case PROPERTY -> stack.push(new Symbol(stack.pop(), names[arg]));
+			case OPERATOR -> {
+				Expression b = stack.pop();
+				stack.push(new OperatorExpression(stack.pop(), OPERATORS[arg], b));
+			}
+			case CALL -> {
+				Expression[] parameters = new Expression[arg];
+				for (int j = arg - 1; j >= 0; j--) parameters[j] = stack.pop();
+				stack.push(new FunctionExpression(stack.pop(), parameters));
+			}
+			default -> throw new IllegalStateException("Unknown op " + ops[i]);
+			}
+		}
+
+		return stack.pop();
+	}
+
+	/**
+	 * @return Estimated retained size in bytes.
+	 * @see MemoryFootprint
+	 */
+	long estimateSize() {
+		long size = MemoryFootprint.shallowSize(this);
+		size += MemoryFootprint.arraySize(1, ops.length) + MemoryFootprint.arraySize(4, args.length);
+		size += MemoryFootprint.arraySize(MemoryFootprint.REFERENCE, constants.length);
+		size += MemoryFootprint.arraySize(MemoryFootprint.REFERENCE, names.length);
+		for (Object val : constants) size += MemoryFootprint.valueSize(val);
+		for (String name : names) size += MemoryFootprint.valueSize(name);
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return toExpression().toString();
+	}
+
+	private static class Builder {
+		private final List<Byte> ops = new ArrayList<>();
+		private final List<Integer> args = new ArrayList<>();
+		private final List<Object> constants = new ArrayList<>();
+		private final List<String> names = new ArrayList<>();
+
+		private void emit(byte op, int arg) {
+			ops.add(op);
+			args.add(arg);
+		}
+
+		private static <T> int indexOf(List<T> pool, T val) {
+			// Type-aware equality: 1 (int) and 1L must not share a slot
+			for (int i = 0; i < pool.size(); i++) {
+				Object other = pool.get(i);
+				if (other == val || (other != null && val != null && other.getClass() == val.getClass() && other.equals(val))) return i;
+			}
+
+			pool.add(val);
+			return pool.size() - 1;
+		}
+
+		public void add(Expression expr) {
+			if (expr instanceof Constant c) {
+				emit(CONST, indexOf(constants, c.val));
+			} else if (expr instanceof Symbol sym) {
+				if (PartialEvaluator.isRoot(sym)) {
+					emit(ROOT, indexOf(names, sym.name));
+				} else {
+					add(sym.target);
+					emit(PROPERTY, indexOf(names, sym.name));
+				}
+			} else if (expr instanceof OperatorExpression op) {
+				add(op.a);
+				add(op.b);
+				emit(OPERATOR, op.operator.ordinal());
+			} else if (expr instanceof FunctionExpression func) {
+				add(func.target);
+				for (Expression param : func.parameters) add(param);
+				emit(CALL, func.parameters.length);
+			} else {
+				throw new IllegalArgumentException("Cannot store " + expr.getClass().getName() + " in compact form");
+			}
+		}
+
+		public CompactExpression build() {
+			byte[] ops = new byte[this.ops.size()];
+			int[] args = new int[ops.length];
+
+			for (int i = 0; i < ops.length; i++) {
+				ops[i] = this.ops.get(i);
+				args[i] = this.args.get(i);
+			}
+
+			return new CompactExpression(ops, args, constants.toArray(), names.toArray(String[]::new));
+		}
+	}
+}
@@ -24,10 +24,19 @@
 
 package dev.phomc.expressionseval.expr;
 
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import dev.phomc.expressionseval.EvalContext;
 import dev.phomc.expressionseval.VariablesInterface;
 
 public class Constant extends Expression {
+	/**
+	 * Shared {@code null} constant, which is also the target of root symbols.
+	 */
+	public static final Constant NULL = new Constant(null);
+
 	public final Object val;
 
 	public Constant(Object val) {
@@ -39,6 +48,22 @@ public class Constant extends Expression {
 		return val;
 	}
 
+	@Override
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables, Executor executor) {
+		return CompletableFuture.completedFuture(val);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		return obj instanceof Constant c && c.getClass() == getClass() && Objects.equals(val, c.val);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(val);
+	}
+
 	@Override
 	public String toString() {
 		return "const(" + val + ")";
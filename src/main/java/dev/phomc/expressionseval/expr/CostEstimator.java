@@ -0,0 +1,131 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.curve.LookupTable;
+
+/**
+ * Estimate cost of evaluating expression before running it. Cost is the sum of weights of all nodes, which
+ * is an upper bound of work as expressions have no loops. Calls are usually much more expensive than
+ * arithmetic, so each function can have its own weight.
+ * <pre>{@code
+ * CostEstimator estimator = new CostEstimator().withFunctionCost("fetch", 500);
+ * estimator.check(Expression.parse(userInput), 1000); // Throws BudgetExceededException
+ * }</pre>
+ */
+public class CostEstimator {
+	public static final long DEFAULT_CONSTANT_COST = 1;
+	public static final long DEFAULT_PROPERTY_COST = 2;
+	public static final long DEFAULT_OPERATOR_COST = 1;
+	public static final long DEFAULT_POWER_COST = 4;
+	public static final long DEFAULT_FUNCTION_COST = 20;
+
+	private long constantCost = DEFAULT_CONSTANT_COST;
+	private long propertyCost = DEFAULT_PROPERTY_COST;
+	private long operatorCost = DEFAULT_OPERATOR_COST;
+	private long powerCost = DEFAULT_POWER_COST;
+	private long functionCost = DEFAULT_FUNCTION_COST;
+	private final Map<String, Long> functionCosts = new HashMap<>();
+
+	public CostEstimator withConstantCost(long cost) {
+		this.constantCost = cost;
+		return this;
+	}
+
+	public CostEstimator withPropertyCost(long cost) {
+		this.propertyCost = cost;
+		return this;
+	}
+
+	public CostEstimator withOperatorCost(long cost, long powerCost) {
+		this.operatorCost = cost;
+		this.powerCost = powerCost;
+		return this;
+	}
+
+	/**
+	 * @param cost Cost of calling functions without their own cost.
+	 * @return This estimator.
+	 */
+	public CostEstimator withFunctionCost(long cost) {
+		this.functionCost = cost;
+		return this;
+	}
+
+	/**
+	 * @param name Name of function. Only the last name of property chain is used, so {@code math.sqrt}
+	 * is {@code sqrt}.
+	 * @param cost Cost of calling this function.
+	 * @return This estimator.
+	 */
+	public CostEstimator withFunctionCost(String name, long cost) {
+		functionCosts.put(name, cost);
+		return this;
+	}
+
+	/**
+	 * @param expr Expression tree, or compiled, compact, adaptive, cached or registered expression. Wrapping
+	 * expressions are estimated by the expression they wrap.
+	 * @return Estimated cost.
+	 * @throws IllegalArgumentException if expression, or any of its nodes, is of unknown type.
+	 */
+	public long estimate(Expression expr) {
+		if (expr instanceof Constant) return constantCost;
+		if (expr instanceof Symbol sym) return (PartialEvaluator.isRoot(sym)? 0 : estimate(sym.target)) + propertyCost;
+		if (expr instanceof OperatorExpression op) return estimate(op.a) + estimate(op.b) + (op.operator == Operator.POWER? powerCost : operatorCost);
+
+		if (expr instanceof FunctionExpression func) {
+			long cost = estimate(func.target);
+			for (Expression param : func.parameters) cost += estimate(param);
+			Long own = func.target instanceof Symbol sym? functionCosts.get(sym.name) : null;
+			return cost + (own != null? own : functionCost);
+		}
+
+		// Lookup table reads its variable and interpolates
+		if (expr instanceof LookupTable) return propertyCost + operatorCost;
+
+		Expression tree = ExpressionAnalysis.treeOf(expr);
+		if (tree != expr) return estimate(tree);
+		throw new IllegalArgumentException("Can't estimate cost of " + expr.getClass().getName() + ": " + expr);
+	}
+
+	/**
+	 * Reject expression if its estimated cost exceeds the limit.
+	 * @param expr Expression.
+	 * @param maxCost Maximum cost.
+	 * @return Estimated cost.
+	 * @throws BudgetExceededException if estimated cost exceeds {@code maxCost}.
+	 * @throws IllegalArgumentException if expression can't be estimated.
+	 */
+	public long check(Expression expr, long maxCost) {
+		long cost = estimate(expr);
+		if (cost > maxCost) throw new BudgetExceededException(BudgetExceededException.Kind.ESTIMATED_COST, maxCost, cost, "Estimated cost " + cost + " exceeds " + maxCost + ": " + expr);
+		return cost;
+	}
+}
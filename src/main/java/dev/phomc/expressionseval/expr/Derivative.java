@@ -0,0 +1,198 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.util.Set;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.SimpleEvalContext;
+
+/**
+ * Symbolic differentiation of numeric expressions. Supported operators are {@code + - * / **} and functions
+ * {@code sin}, {@code cos}, {@code tan}, {@code exp}, {@code ln}/{@code log} and {@code sqrt} (either global or
+ * inside namespace like {@code math.sin}). Derivatives of functions refer to other functions in the same
+ * namespace, so {@code math.sin(t)} becomes {@code math.cos(t)}.
+ * <p>
+ * Variables are assumed to be floating point numbers. Constants introduced by differentiation are
+ * {@code double}, so derivatives never perform integer division that wasn't in the original expression.
+ */
+public final class Derivative {
+	private static final EvalContext NUMERIC = new SimpleEvalContext() {};
+	private static final Set<String> INTRINSICS = Set.of("sin", "cos", "tan", "exp", "ln", "log", "sqrt");
+
+	private Derivative() {}
+
+	/**
+	 * Differentiate expression with respect to a variable and simplify the result.
+	 * @param expr Expression to differentiate.
+	 * @param variable Name of variable.
+	 * @return Derivative of expression.
+	 * @throws UnsupportedOperationException if expression contains operator or function that can't be
+	 * differentiated.
+	 */
+	public static Expression derivative(Expression expr, String variable) {
+		return simplify(differentiate(expr, variable));
+	}
+
+	private static Expression differentiate(Expression expr, String variable) {
+		if (!dependsOn(expr, variable)) return constant(0D);
+
+		if (expr instanceof Symbol sym) {
+			if (PartialEvaluator.isRoot(sym)) return constant(1D); // Only the variable itself depends on variable
+			throw new UnsupportedOperationException("Cannot differentiate property '" + sym.name + "' of " + sym.target);
+		}
+
+		if (expr instanceof OperatorExpression op) {
+			Expression a = op.a, b = op.b;
+			Expression da = differentiate(a, variable), db = differentiate(b, variable);
+
+			switch (op.operator) {
+			case ADD:
+			case SUBTRACT:
+				return new OperatorExpression(da, op.operator, db);
+			case MULTIPLY:
+				return add(mul(da, b), mul(a, db));
+			case DIVIDE:
+				if (!dependsOn(b, variable)) return div(da, b);
+				return div(sub(mul(da, b), mul(a, db)), mul(b, b));
+			case POWER:
+				if (!dependsOn(b, variable)) return mul(mul(b, pow(a, sub(b, constant(1D)))), da);
+
+				if (!dependsOn(a, variable) && a instanceof Constant c && c.val instanceof Number base) {
+					return mul(mul(expr, constant(Math.log(base.doubleValue()))), db);
+				}
+
+				throw new UnsupportedOperationException("Cannot differentiate power with variable base and exponent: " + expr);
+			default:
+				throw new UnsupportedOperationException("Cannot differentiate operator '" + op.operator.symbol + "'");
+			}
+		}
+
+		if (expr instanceof FunctionExpression func) {
+			if (!(func.target instanceof Symbol target) || dependsOn(target, variable) || func.parameters.length != 1 || !INTRINSICS.contains(target.name)) {
+				throw new UnsupportedOperationException("Cannot differentiate function call " + func);
+			}
+
+			Expression u = func.parameters[0];
+			Expression du = differentiate(u, variable);
+
+			return switch (target.name) {
+			case "sin" -> mul(call(target, "cos", u), du);
+			case "cos" -> mul(mul(constant(-1D), call(target, "sin", u)), du);
+			case "tan" -> div(du, mul(call(target, "cos", u), call(target, "cos", u)));
+			case "exp" -> mul(func, du);
+			case "ln", "log" -> div(du, u);
+			case "sqrt" -> div(du, mul(constant(2D), func));
+			default -> throw new UnsupportedOperationException("Cannot differentiate function call " + func);
+			};
+		}
+
+		throw new UnsupportedOperationException("Cannot differentiate " + expr.getClass().getName());
+	}
+
+	/**
+	 * Check if expression reads a root variable.
+	 * @param expr Expression.
+	 * @param variable Name of variable.
+	 * @return {@code true} if variable is used.
+	 */
+	public static boolean dependsOn(Expression expr, String variable) {
+		if (expr instanceof Symbol sym) return PartialEvaluator.isRoot(sym)? sym.name.equals(variable) : dependsOn(sym.target, variable);
+		if (expr instanceof OperatorExpression op) return dependsOn(op.a, variable) || dependsOn(op.b, variable);
+
+		if (expr instanceof FunctionExpression func) {
+			if (dependsOn(func.target, variable)) return true;
+			for (Expression param : func.parameters) if (dependsOn(param, variable)) return true;
+			return false;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Fold constant arithmetic and remove identities like {@code x * 1}, {@code x + 0} and {@code x ** 1}.
+	 * @param expr Expression to simplify.
+	 * @return Simplified expression.
+	 */
+	public static Expression simplify(Expression expr) {
+		if (expr instanceof FunctionExpression func) {
+			Expression[] parameters = new Expression[func.parameters.length];
+			for (int i = 0; i < parameters.length; i++) parameters[i] = simplify(func.parameters[i]);
+			return new FunctionExpression(func.target, parameters);
+		}
+
+		if (!(expr instanceof OperatorExpression op)) return expr;
+		Expression a = simplify(op.a), b = simplify(op.b);
+
+		if (a instanceof Constant ca && ca.val instanceof Number && b instanceof Constant cb && cb.val instanceof Number) {
+			Object folded = NUMERIC.applyOperator(ca.val, op.operator, cb.val);
+			if (folded != null) return new Constant(folded);
+		}
+
+		switch (op.operator) {
+		case ADD:
+			if (isConstant(a, 0)) return b;
+			if (isConstant(b, 0)) return a;
+			break;
+		case SUBTRACT:
+			if (isConstant(b, 0)) return a;
+			if (isConstant(a, 0)) return simplify(mul(constant(-1D), b));
+			break;
+		case MULTIPLY:
+			if (isConstant(a, 0) || isConstant(b, 0)) return constant(0D);
+			if (isConstant(a, 1)) return b;
+			if (isConstant(b, 1)) return a;
+			break;
+		case DIVIDE:
+			if (isConstant(a, 0)) return constant(0D);
+			if (isConstant(b, 1)) return a;
+			break;
+		case POWER:
+			if (isConstant(b, 0)) return constant(1D);
+			if (isConstant(b, 1)) return a;
+			break;
+		default:
+			break;
+		}
+
+		return a == op.a && b == op.b? op : new OperatorExpression(a, op.operator, b);
+	}
+
+	private static boolean isConstant(Expression expr, double val) {
+		return expr instanceof Constant c && c.val instanceof Number n && n.doubleValue() == val;
+	}
+
+	private static Constant constant(double val) { return new Constant(val); }
+	private static Expression add(Expression a, Expression b) { return new OperatorExpression(a, Operator.ADD, b); }
+	private static Expression sub(Expression a, Expression b) { return new OperatorExpression(a, Operator.SUBTRACT, b); }
+	private static Expression mul(Expression a, Expression b) { return new OperatorExpression(a, Operator.MULTIPLY, b); }
+	private static Expression div(Expression a, Expression b) { return new OperatorExpression(a, Operator.DIVIDE, b); }
+	private static Expression pow(Expression a, Expression b) { return new OperatorExpression(a, Operator.POWER, b); }
+
+	private static Expression call(Symbol sibling, String name, Expression param) {
+		return new FunctionExpression(new Symbol(sibling.target, name), new Expression[] { param });
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.time.Duration;
+
+/**
+ * Limits of a single evaluation of {@link VirtualMachineExpression}.
+ * @see VirtualMachineExpression#eval(dev.phomc.expressionseval.EvalContext, dev.phomc.expressionseval.VariablesInterface, EvalBudget)
+ */
+public final class EvalBudget {
+	public static final long UNLIMITED = Long.MAX_VALUE;
+
+	/**
+	 * Deadline is checked after every function call and every this many instructions.
+	 */
+	static final int DEADLINE_CHECK_INTERVAL = 64;
+
+	public final long maxInstructions;
+	public final long timeoutNanos;
+
+	private EvalBudget(long maxInstructions, long timeoutNanos) {
+		if (maxInstructions < 0) throw new IllegalArgumentException("maxInstructions must not be negative");
+		if (timeoutNanos < 0) throw new IllegalArgumentException("timeout must not be negative");
+		this.maxInstructions = maxInstructions;
+		this.timeoutNanos = timeoutNanos;
+	}
+
+	/**
+	 * @param maxInstructions Maximum number of executed instructions, or {@link #UNLIMITED}.
+	 * @param timeout Maximum evaluation time, or {@code null} for no deadline.
+	 * @return Budget.
+	 */
+	public static EvalBudget of(long maxInstructions, Duration timeout) {
+		return new EvalBudget(maxInstructions, timeout != null? timeout.toNanos() : UNLIMITED);
+	}
+
+	public static EvalBudget instructions(long maxInstructions) {
+		return new EvalBudget(maxInstructions, UNLIMITED);
+	}
+
+	public static EvalBudget timeout(Duration timeout) {
+		return of(UNLIMITED, timeout);
+	}
+
+	public boolean hasDeadline() {
+		return timeoutNanos != UNLIMITED;
+	}
+
+	@Override
+	public String toString() {
+		return "EvalBudget[instructions=" + (maxInstructions == UNLIMITED? "unlimited" : maxInstructions)
+				+ ", timeout=" + (hasDeadline()? Duration.ofNanos(timeoutNanos) : "none") + "]";
+	}
+}
@@ -28,16 +28,59 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import dev.phomc.expressionseval.EvalContext;
 import dev.phomc.expressionseval.Operator;
 import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.jfr.ParseEvent;
 
 public abstract class Expression {
 	public abstract Object eval(EvalContext ctx, VariablesInterface variables);
 
+	/**
+	 * Evaluate expression asynchronously. Functions may return {@link CompletionStage}, which is awaited
+	 * without blocking before its result is used. Independent function calls are started concurrently, so
+	 * evaluation takes as long as the slowest chain of dependent calls instead of the sum of all calls.
+	 * @param ctx Evaluation context.
+	 * @param variables Variables.
+	 * @return Future that completes with the result of evaluation.
+	 * @see #evalAsync(EvalContext, VariablesInterface, Executor)
+	 */
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables) {
+		return evalAsync(ctx, variables, null);
+	}
+
+	/**
+	 * Evaluate expression asynchronously, calling functions on given executor. Use this when functions block
+	 * instead of returning {@link CompletionStage}, with an executor that starts a virtual thread per task, for
+	 * example.
+	 * <p>
+	 * By default, this evaluates synchronously and returns completed future.
+	 * @param ctx Evaluation context.
+	 * @param variables Variables.
+	 * @param executor Executor to call functions on, or {@code null} to call functions on the thread that
+	 * completed their last parameter.
+	 * @return Future that completes with the result of evaluation.
+	 */
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables, Executor executor) {
+		try {
+			return CompletableFuture.completedFuture(eval(ctx, variables));
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static CompletableFuture<Object> await(Object value) {
+		if (value instanceof CompletionStage<?> stage) return (CompletableFuture<Object>) stage.toCompletableFuture();
+		return CompletableFuture.completedFuture(value);
+	}
+
 	// Parsing
 	public static class Reader {
 		private static final Pattern NUMBER = Pattern.compile("^\\s*(?<integer>[LlFfDd]?\\d+)(\\.(?<float>\\d+))?");
@@ -205,6 +248,9 @@ public abstract class Expression {
 		// '12 + myFunction(23, math.sin(34) + 45 + (123 + 456 + 789))' -> [12, myFunction, (, 23, math, ., sin, (, 34, ), +, 45, )]
 		// tokenize -> reduce -> expression -> compiled expression -> optimized expression
 
+		ParseEvent event = new ParseEvent();
+		event.begin();
+
 		List<Token> tokens = new ArrayList<>();
 		Reader reader = new Reader(exprStr);
 		reader.skipWhitespaces();
@@ -224,9 +270,19 @@ public abstract class Expression {
 			reader.skipWhitespaces();
 		}
 
+		int tokenCount = tokens.size();
+		if (tokenCount == 0) throw new RuntimeException("Expression is empty");
 		reduceAll(tokens);
 		if (tokens.size() > 1) throw new RuntimeException("Tokens are not reduced to 1 element");
-		return parseFromToken(tokens.get(0));
+		Expression expr = parseFromToken(tokens.get(0));
+
+		if (event.shouldCommit()) {
+			event.expression = exprStr;
+			event.tokenCount = tokenCount;
+			event.commit();
+		}
+
+		return expr;
 	}
 
 	/**
@@ -235,7 +291,7 @@ public abstract class Expression {
 	 * @return Compiled expression.
 	 */
 	public static VirtualMachineExpression compile(String exprStr) {
-		return VirtualMachineExpression.compile(parse(exprStr));
+		return VirtualMachineExpression.compile(parse(exprStr), null, exprStr);
 	}
 
 	private static void reduceAll(List<Token> tokens) {
@@ -280,6 +336,7 @@ public abstract class Expression {
 
 			if (token instanceof SymbolToken || token instanceof SymbolsStack) {
 				target = token;
+				if (!iter.hasNext()) break;
 				Token next = iter.next();
 				if (next != PARENTHESES_OPEN) continue;
 
@@ -374,6 +431,7 @@ public abstract class Expression {
 			Token currentToken = iter.next();
 
 			if (currentToken instanceof OperatorToken op) {
+				if (!iter.hasNext()) throw new RuntimeException("Missing right operand for '" + op.operator.symbol + "'");
 				boolean isIncluded = false;
 
 				for (Operator allowedOperation : operations) {
@@ -448,7 +506,7 @@ public abstract class Expression {
 	}
 
 	private static Symbol parseFromToken(SymbolsStack token) {
-		Symbol expr = new Symbol(new Constant(null), token.stack.get(0));
+		Symbol expr = new Symbol(Constant.NULL, token.stack.get(0));
 		for (int i = 1; i < token.stack.size(); i++) expr = new Symbol(expr, token.stack.get(i));
 		return expr;
 	}
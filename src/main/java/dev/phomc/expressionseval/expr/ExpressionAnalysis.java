@@ -0,0 +1,196 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import dev.phomc.expressionseval.registry.RegisteredExpression;
+
+/**
+ * Variables, property paths and functions that an expression reads, found without evaluating it. Loaders can
+ * use this to fetch only the fields that an expression needs:
+ * <pre>{@code
+ * ExpressionAnalysis analysis = ExpressionAnalysis.of(Expression.compile("order.customer.tier * rate(order.region)"));
+ * analysis.propertyPaths(); // [order.customer.tier, order.region]
+ * analysis.functions();     // [rate]
+ * analysis.rootVariables(); // [order, rate]
+ * }</pre>
+ * Paths only include chains that start from root variables. Properties of function results are evaluated
+ * from whatever the function reads, so only the function and its parameters are reported.
+ */
+public final class ExpressionAnalysis {
+	private final Set<List<String>> reads = new LinkedHashSet<>();
+	private final Set<List<String>> values = new LinkedHashSet<>();
+	private final Set<List<String>> functions = new LinkedHashSet<>();
+	private boolean computedFunctions;
+	private boolean complete = true;
+
+	private ExpressionAnalysis() {}
+
+	/**
+	 * @param expr Expression tree, compiled expression, compact expression, adaptive expression or cached
+	 * expression.
+	 * @return Analysis of expression.
+	 */
+	public static ExpressionAnalysis of(Expression expr) {
+		ExpressionAnalysis analysis = new ExpressionAnalysis();
+		analysis.collect(treeOf(expr));
+		return analysis;
+	}
+
+	/**
+	 * @return Names of root variables, including functions, in the order they are first read.
+	 */
+	public Set<String> rootVariables() {
+		Set<String> roots = new LinkedHashSet<>();
+		for (List<String> path : reads) roots.add(path.get(0));
+		return Collections.unmodifiableSet(roots);
+	}
+
+	/**
+	 * @return Dotted property paths that are used as values, such as {@code order.customer.tier}.
+	 */
+	public Set<String> propertyPaths() {
+		return join(values);
+	}
+
+	/**
+	 * @return Dotted paths of called functions, such as {@code math.sqrt}.
+	 */
+	public Set<String> functions() {
+		return join(functions);
+	}
+
+	/**
+	 * @return All paths that expression reads, including functions, in the order they are first read.
+	 */
+	public List<List<String>> paths() {
+		return List.copyOf(reads);
+	}
+
+	List<List<String>> functionPaths() {
+		return List.copyOf(functions);
+	}
+
+	/**
+	 * @return Whether some functions are results of other calls, so they are not in {@link #functions()}.
+	 */
+	public boolean hasComputedFunctions() {
+		return computedFunctions;
+	}
+
+	/**
+	 * @return Whether expression only contains nodes that can be analyzed. If not, expression may read
+	 * anything.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	@Override
+	public String toString() {
+		return "ExpressionAnalysis[paths=" + propertyPaths() + ", functions=" + functions() + (complete? "" : ", incomplete") + "]";
+	}
+
+	private static Set<String> join(Set<List<String>> paths) {
+		Set<String> joined = new LinkedHashSet<>();
+		for (List<String> path : paths) joined.add(String.join(".", path));
+		return Collections.unmodifiableSet(joined);
+	}
+
+	/**
+	 * @return Expression tree of compiled or wrapping expression, or the expression itself.
+	 */
+	static Expression treeOf(Expression expr) {
+		if (expr instanceof VirtualMachineExpression vm) return vm.decompile();
+		if (expr instanceof CompactExpression compact) return compact.toExpression();
+		if (expr instanceof AdaptiveExpression adaptive) return adaptive.tree;
+		if (expr instanceof CachedExpression cached) return treeOf(cached.expr);
+		if (expr instanceof RegisteredExpression registered) return treeOf(registered.expression);
+		return expr;
+	}
+
+	/**
+	 * @return Path of root property chain, or {@code null} if the chain doesn't start from a root variable.
+	 */
+	private static List<String> pathOf(Symbol sym) {
+		List<String> path = new ArrayList<>();
+		Expression current = sym;
+
+		while (current instanceof Symbol s) {
+			path.add(0, s.name);
+			if (PartialEvaluator.isRoot(s)) return List.copyOf(path);
+			current = s.target;
+		}
+
+		return null;
+	}
+
+	private void collect(Expression expr) {
+		if (expr instanceof Constant) return;
+
+		if (expr instanceof Symbol sym) {
+			List<String> path = pathOf(sym);
+
+			if (path != null) {
+				reads.add(path);
+				values.add(path);
+				return;
+			}
+
+			Expression target = sym.target;
+			while (target instanceof Symbol s) target = s.target;
+			collect(target);
+			return;
+		}
+
+		if (expr instanceof OperatorExpression op) {
+			collect(op.a);
+			collect(op.b);
+			return;
+		}
+
+		if (expr instanceof FunctionExpression func) {
+			List<String> path = func.target instanceof Symbol sym? pathOf(sym) : null;
+
+			if (path != null) {
+				reads.add(path);
+				functions.add(path);
+			} else {
+				computedFunctions = true;
+				collect(func.target);
+			}
+
+			for (Expression param : func.parameters) collect(param);
+			return;
+		}
+
+		complete = false;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import dev.phomc.expressionseval.Operator;
+
+/**
+ * Hash-consing factory for expression nodes. Structurally equal nodes created or interned through the same
+ * interner are the same instance, so identical subtrees of many expressions are only stored once. Symbol
+ * names are also shared.
+ * <p>
+ * Interned nodes are strongly referenced until {@link #clear()} is called. Only {@link Constant},
+ * {@link Symbol}, {@link OperatorExpression} and {@link FunctionExpression} are interned; other expressions
+ * are returned as is.
+ */
+public class ExpressionInterner {
+	private final Map<Expression, Expression> nodes = new ConcurrentHashMap<>();
+	private final Map<String, String> names = new ConcurrentHashMap<>();
+
+	public Expression parse(String exprStr) {
+		return intern(Expression.parse(exprStr));
+	}
+
+	/**
+	 * Intern expression and all of its children.
+	 * @param expr Expression to intern.
+	 * @return Interned expression, which is structurally equal to given expression.
+	 */
+	public Expression intern(Expression expr) {
+		if (expr instanceof Constant c) return constant(c.val);
+		if (expr instanceof Symbol sym) return symbol(intern(sym.target), sym.name);
+		if (expr instanceof OperatorExpression op) return operator(intern(op.a), op.operator, intern(op.b));
+
+		if (expr instanceof FunctionExpression func) {
+			Expression[] parameters = new Expression[func.parameters.length];
+			for (int i = 0; i < parameters.length; i++) parameters[i] = intern(func.parameters[i]);
+			return function(intern(func.target), parameters);
+		}
+
+		return expr;
+	}
+
+	public Constant constant(Object val) {
+		if (val == null) return Constant.NULL;
+		return (Constant) nodes.computeIfAbsent(new Constant(val), k -> k);
+	}
+
+	/**
+	 * @param target Interned target.
+	 * @param name Name of symbol.
+	 * @return Interned symbol.
+	 */
+	public Symbol symbol(Expression target, String name) {
+		return (Symbol) nodes.computeIfAbsent(new Symbol(target, names.computeIfAbsent(name, k -> k)), k -> k);
+	}
+
+	/**
+	 * @param a Interned left operand.
+	 * @param op Operator.
+	 * @param b Interned right operand.
+	 * @return Interned operator expression.
+	 */
+	public OperatorExpression operator(Expression a, Operator op, Expression b) {
+		return (OperatorExpression) nodes.computeIfAbsent(new OperatorExpression(a, op, b), k -> k);
+	}
+
+	/**
+	 * @param target Interned target.
+	 * @param parameters Interned parameters. The array must not be modified after this call.
+	 * @return Interned function expression.
+	 */
+	public FunctionExpression function(Expression target, Expression[] parameters) {
+		return (FunctionExpression) nodes.computeIfAbsent(new FunctionExpression(target, parameters), k -> k);
+	}
+
+	/**
+	 * @return Number of unique nodes.
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	public void clear() {
+		nodes.clear();
+		names.clear();
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.VariablesInterface;
+
+/**
+ * Execution profile of a {@link VirtualMachineExpression}. Every instruction and every {@link EvalContext}
+ * callback is counted while profiling is enabled, but only 1 in {@link #sampleInterval} evaluations of each thread
+ * is timed to keep {@link System#nanoTime()} overhead low. Functions are labelled by the property path they are
+ * called from. The profile is bound to the code of virtual machine at the time profiling was enabled.
+ * @see VirtualMachineExpression#enableProfiling(int)
+ */
+public class ExpressionProfile {
+	public final int sampleInterval;
+	public final LongAdder evaluations = new LongAdder();
+
+	private final VirtualMachineExpression.Instruction[] code;
+	private final Entry[] instructions;
+	private final String[] callLabels;
+	private final ThreadLocal<int[]> sampleCounters = ThreadLocal.withInitial(() -> new int[1]);
+	private final Entry[] operators = new Entry[Operator.values().length];
+	private final Map<String, Entry> symbols = new ConcurrentHashMap<>();
+	private final Map<String, Entry> functions = new ConcurrentHashMap<>();
+
+	ExpressionProfile(VirtualMachineExpression vm, int sampleInterval) {
+		if (sampleInterval < 1) throw new IllegalArgumentException("Sample interval must be at least 1");
+		this.sampleInterval = sampleInterval;
+		this.code = vm.code.toArray(VirtualMachineExpression.Instruction[]::new);
+		this.instructions = new Entry[code.length];
+		for (int i = 0; i < code.length; i++) instructions[i] = new Entry(Kind.INSTRUCTION, "#" + i + " " + code[i]);
+		for (Operator op : Operator.values()) operators[op.ordinal()] = new Entry(Kind.OPERATOR, op.symbol);
+		this.callLabels = callLabels(code);
+	}
+
+	/**
+	 * Label functions by their call sites, which are found by decompiling code. Labelling function values
+	 * instead would mix up functions that share the same object.
+	 * @return Label of function called by each instruction, or {@code null} if instruction doesn't call.
+	 */
+	private static String[] callLabels(VirtualMachineExpression.Instruction[] code) {
+		String[] labels = new String[code.length];
+		Deque<Expression> stack = new ArrayDeque<>();
+
+		for (int i = 0; i < code.length; i++) {
+			Expression top = stack.peek();
+			code[i].decompile(stack);
+			if (stack.peek() != top && stack.peek() instanceof FunctionExpression func) labels[i] = labelOf(func.target);
+		}
+
+		return labels;
+	}
+
+	private static String labelOf(Expression target) {
+		StringBuilder path = new StringBuilder();
+
+		while (target instanceof Symbol sym) {
+			path.insert(0, path.length() == 0? sym.name : sym.name + ".");
+			if (PartialEvaluator.isRoot(sym)) return path.toString();
+			target = sym.target;
+		}
+
+		return target.toString() + (path.length() == 0? "" : "." + path);
+	}
+
+	Object eval(EvalContext ctx, VariablesInterface variables) {
+		evaluations.increment();
+
+		// Each thread counts its own evaluations, so sampling doesn't sum the shared counter
+		int[] counter = sampleCounters.get();
+		boolean timed = ++counter[0] >= sampleInterval;
+		if (timed) counter[0] = 0;
+
+		ProfilingContext profilingCtx = new ProfilingContext(ctx, timed);
+		VirtualMachineExpression.Frame stack = VirtualMachineExpression.Frame.acquire();
+
+		try {
+			for (int i = 0; i < instructions.length; i++) {
+				Entry entry = instructions[i];
+				profilingCtx.instruction = i;
+
+				if (timed) {
+					long start = System.nanoTime();
+					code[i].execute(profilingCtx, variables, stack);
+					entry.record(System.nanoTime() - start);
+				} else {
+					code[i].execute(profilingCtx, variables, stack);
+					entry.count.increment();
+				}
+			}
+
+			return stack.isEmpty()? null : stack.pop();
+		} finally {
+			stack.release();
+		}
+	}
+
+	public List<Entry> instructions() {
+		return List.of(instructions);
+	}
+
+	/**
+	 * Get all entries (instructions, operators, symbols and functions) sorted by estimated total time, hottest
+	 * first.
+	 * @param limit Maximum number of entries.
+	 * @return Hottest entries.
+	 */
+	public List<Entry> hottest(int limit) {
+		List<Entry> entries = new ArrayList<>();
+		for (Entry entry : instructions) entries.add(entry);
+		for (Entry entry : operators) if (entry.count() > 0) entries.add(entry);
+		entries.addAll(symbols.values());
+		entries.addAll(functions.values());
+		entries.sort(Comparator.comparingDouble(Entry::estimatedTotalNanos).thenComparingLong(Entry::count).reversed());
+		return entries.subList(0, Math.min(limit, entries.size()));
+	}
+
+	public void reset() {
+		evaluations.reset();
+		for (Entry entry : instructions) entry.reset();
+		for (Entry entry : operators) entry.reset();
+		symbols.clear();
+		functions.clear();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Profile of ").append(evaluations.sum()).append(" evaluations (1 in ").append(sampleInterval).append(" timed)\n");
+		for (Entry entry : hottest(Integer.MAX_VALUE)) builder.append("  ").append(entry).append('\n');
+		return builder.toString();
+	}
+
+	public enum Kind {
+		INSTRUCTION, OPERATOR, SYMBOL, FUNCTION;
+	}
+
+	public static class Entry {
+		public final Kind kind;
+		public final String label;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder samples = new LongAdder();
+		private final LongAdder sampledNanos = new LongAdder();
+
+		private Entry(Kind kind, String label) {
+			this.kind = kind;
+			this.label = label;
+		}
+
+		private void record(long nanos) {
+			count.increment();
+			samples.increment();
+			sampledNanos.add(nanos);
+		}
+
+		private void reset() {
+			count.reset();
+			samples.reset();
+			sampledNanos.reset();
+		}
+
+		public long count() { return count.sum(); }
+		public long samples() { return samples.sum(); }
+		public long sampledNanos() { return sampledNanos.sum(); }
+
+		public double meanNanos() {
+			long samples = samples();
+			return samples == 0? 0 : (double) sampledNanos() / samples;
+		}
+
+		/**
+		 * Estimate total time spent by extrapolating the mean of timed executions to all executions.
+		 * @return Estimated total time in nanoseconds.
+		 */
+		public double estimatedTotalNanos() {
+			return meanNanos() * count();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-11s %-24s count=%d mean=%.1fns total~%.3fms", kind, label, count(), meanNanos(), estimatedTotalNanos() / 1_000_000D);
+		}
+	}
+
+	private class ProfilingContext implements EvalContext {
+		private final EvalContext ctx;
+		private final boolean timed;
+		private int instruction;
+
+		public ProfilingContext(EvalContext ctx, boolean timed) {
+			this.ctx = ctx;
+			this.timed = timed;
+		}
+
+		@Override
+		public Object applyOperator(Object a, Operator op, Object b) {
+			Entry entry = operators[op.ordinal()];
+			if (!timed) {
+				entry.count.increment();
+				return ctx.applyOperator(a, op, b);
+			}
+
+			long start = System.nanoTime();
+			Object result = ctx.applyOperator(a, op, b);
+			entry.record(System.nanoTime() - start);
+			return result;
+		}
+
+		@Override
+		public Object propertyOf(Object src, String name, VariablesInterface variables) {
+			Entry entry = symbols.computeIfAbsent(name, n -> new Entry(Kind.SYMBOL, n));
+
+			if (!timed) {
+				entry.count.increment();
+				return ctx.propertyOf(src, name, variables);
+			}
+
+			long start = System.nanoTime();
+			Object result = ctx.propertyOf(src, name, variables);
+			entry.record(System.nanoTime() - start);
+			return result;
+		}
+
+		@Override
+		public Object functionCall(Object function, Object[] parameters) {
+			String name = callLabels[instruction];
+			if (name == null) name = function != null? function.getClass().getSimpleName() : "null";
+			Entry entry = functions.computeIfAbsent(name, n -> new Entry(Kind.FUNCTION, n));
+
+			if (!timed) {
+				entry.count.increment();
+				return ctx.functionCall(function, parameters);
+			}
+
+			long start = System.nanoTime();
+			Object result = ctx.functionCall(function, parameters);
+			entry.record(System.nanoTime() - start);
+			return result;
+		}
+	}
+}
@@ -24,6 +24,10 @@
 
 package dev.phomc.expressionseval.expr;
 
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import dev.phomc.expressionseval.EvalContext;
@@ -32,10 +36,12 @@ import dev.phomc.expressionseval.VariablesInterface;
 public class FunctionExpression extends Expression {
 	public final Expression target;
 	public final Expression[] parameters;
+	private final int hash;
 
 	public FunctionExpression(Expression target, Expression[] parameters) {
 		this.target = target;
 		this.parameters = parameters;
+		this.hash = 31 * target.hashCode() + Arrays.hashCode(parameters);
 	}
 
 	@Override
@@ -45,6 +51,34 @@ public class FunctionExpression extends Expression {
 		return ctx.functionCall(target.eval(ctx, variables), params);
 	}
 
+	@Override
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables, Executor executor) {
+		// Start all parameters before waiting for any of them
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[parameters.length + 1];
+		for (int i = 0; i < parameters.length; i++) futures[i] = parameters[i].evalAsync(ctx, variables, executor);
+		futures[parameters.length] = target.evalAsync(ctx, variables, executor);
+
+		Function<Void, Object> call = ignored -> {
+			Object[] params = new Object[parameters.length];
+			for (int i = 0; i < params.length; i++) params[i] = futures[i].join();
+			return ctx.functionCall(futures[parameters.length].join(), params);
+		};
+
+		CompletableFuture<Void> ready = CompletableFuture.allOf(futures);
+		return (executor != null? ready.thenApplyAsync(call, executor) : ready.thenApply(call)).thenCompose(Expression::await);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		return obj instanceof FunctionExpression func && func.getClass() == getClass() && hash == func.hash && target.equals(func.target) && Arrays.equals(parameters, func.parameters);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
 	@Override
 	public String toString() {
 		return "call[" + target + "]: (" + String.join(", ", Stream.of(parameters).map(v -> v.toString()).toArray(String[]::new)) + ")";
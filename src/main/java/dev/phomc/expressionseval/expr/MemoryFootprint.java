@@ -0,0 +1,190 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import dev.phomc.expressionseval.ScopedVariables;
+
+/**
+ * Estimate retained heap size of expressions. Estimates assume 64-bit JVM with compressed references and
+ * compressed class pointers (12 bytes object header, 4 bytes references, 8 bytes alignment), which is the
+ * default for heaps smaller than 32 GB.
+ * <p>
+ * Objects shared by all expressions (cached boxed values, enums, shared instructions) are not counted.
+ * Objects shared between expressions passed to the same {@link #estimate(Iterable)} call (for example, nodes
+ * from {@link ExpressionInterner}) are counted once. Values that are not numbers or strings (functions, maps,
+ * ...) are counted by their shallow size only.
+ */
+public final class MemoryFootprint {
+	public static final int HEADER = 12;
+	public static final int ARRAY_HEADER = 16;
+	public static final int REFERENCE = 4;
+	public static final int ALIGNMENT = 8;
+
+	private static final ClassValue<Long> SHALLOW_SIZES = new ClassValue<>() {
+		@Override
+		protected Long computeValue(Class<?> type) {
+			long size = HEADER;
+
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					if (Modifier.isStatic(field.getModifiers())) continue;
+					size += fieldSize(field.getType());
+				}
+			}
+
+			return align(size);
+		}
+	};
+
+	private MemoryFootprint() {}
+
+	/**
+	 * @param expr Expression tree, compiled expression or compact expression.
+	 * @return Estimated retained size in bytes.
+	 */
+	public static long estimate(Expression expr) {
+		return estimate(expr, Collections.newSetFromMap(new IdentityHashMap<>()));
+	}
+
+	/**
+	 * Estimate total size of many expressions, counting shared nodes once.
+	 * @param exprs Expressions.
+	 * @return Estimated retained size in bytes.
+	 */
+	public static long estimate(Iterable<? extends Expression> exprs) {
+		Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		long size = 0;
+		for (Expression expr : exprs) size += estimate(expr, visited);
+		return size;
+	}
+
+	private static long estimate(Expression expr, Set<Object> visited) {
+		if (expr == null || !visited.add(expr)) return 0;
+		long size = shallowSize(expr);
+
+		if (expr instanceof Constant c) return size + valueSize(c.val, visited);
+		if (expr instanceof Symbol sym) return size + estimate(sym.target, visited) + valueSize(sym.name, visited);
+		if (expr instanceof OperatorExpression op) return size + estimate(op.a, visited) + estimate(op.b, visited);
+
+		if (expr instanceof FunctionExpression func) {
+			size += estimate(func.target, visited) + arraySize(REFERENCE, func.parameters.length);
+			for (Expression param : func.parameters) size += estimate(param, visited);
+			return size;
+		}
+
+		if (expr instanceof VirtualMachineExpression vm) {
+			// ArrayList and its element array (compiled code is trimmed to size)
+			size += align(HEADER + 3 * 4) + arraySize(REFERENCE, vm.code.size());
+			size += valueSize(vm.source, visited);
+			for (VirtualMachineExpression.Instruction instr : vm.code) size += instructionSize(instr, visited);
+			return size;
+		}
+
+		if (expr instanceof CompactExpression compact) return compact.estimateSize();
+		return size;
+	}
+
+	private static long instructionSize(VirtualMachineExpression.Instruction instr, Set<Object> visited) {
+		if (instr == VirtualMachineExpression.SymbolInstruction.INSTR || instr == VirtualMachineExpression.FunctionInstruction.INSTR) return 0;
+		if (!visited.add(instr)) return 0;
+		long size = shallowSize(instr);
+
+		for (Class<?> c = instr.getClass(); c != VirtualMachineExpression.Instruction.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) continue;
+
+				try {
+					field.setAccessible(true);
+					size += valueSize(field.get(instr), visited);
+				} catch (ReflectiveOperationException | RuntimeException e) {
+					// Can't look inside, only count the reference
+				}
+			}
+		}
+
+		return size;
+	}
+
+	private static long valueSize(Object val, Set<Object> visited) {
+		if (val == null || isShared(val) || !visited.add(val)) return 0;
+		if (val instanceof Object[] array) {
+			long size = arraySize(REFERENCE, array.length);
+			for (Object element : array) size += valueSize(element, visited);
+			return size;
+		}
+
+		return valueSize(val);
+	}
+
+	static long valueSize(Object val) {
+		if (val == null || isShared(val)) return 0;
+		if (val instanceof String s) return shallowSize(s) + arraySize(1, s.length()); // Assume Latin-1
+		return shallowSize(val);
+	}
+
+	private static boolean isShared(Object val) {
+		if (val instanceof Boolean || val instanceof Enum<?> || val instanceof ScopedVariables.Layout) return true;
+
+		// Boxing caches
+		if (val instanceof Integer || val instanceof Short || val instanceof Byte || val instanceof Long) {
+			long l = ((Number) val).longValue();
+			return l >= -128 && l <= 127;
+		}
+
+		if (val instanceof Character c) return c <= 127;
+		return false;
+	}
+
+	public static long shallowSize(Object obj) {
+		Class<?> type = obj.getClass();
+		if (!type.isArray()) return SHALLOW_SIZES.get(type);
+
+		Class<?> component = type.getComponentType();
+		return arraySize(component.isPrimitive()? fieldSize(component) : REFERENCE, Array.getLength(obj));
+	}
+
+	public static long arraySize(int elementSize, int length) {
+		return align(ARRAY_HEADER + (long) elementSize * length);
+	}
+
+	private static int fieldSize(Class<?> type) {
+		if (type == long.class || type == double.class) return 8;
+		if (type == int.class || type == float.class) return 4;
+		if (type == short.class || type == char.class) return 2;
+		if (type == byte.class || type == boolean.class) return 1;
+		return REFERENCE;
+	}
+
+	private static long align(long size) {
+		return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+}
@@ -24,6 +24,9 @@
 
 package dev.phomc.expressionseval.expr;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import dev.phomc.expressionseval.EvalContext;
 import dev.phomc.expressionseval.Operator;
 import dev.phomc.expressionseval.VariablesInterface;
@@ -31,11 +34,14 @@ import dev.phomc.expressionseval.VariablesInterface;
 public class OperatorExpression extends Expression {
 	public final Expression a, b;
 	public final Operator operator;
+	private final int hash;
 
 	public OperatorExpression(Expression a, Operator op, Expression b) {
 		this.a = a;
 		this.b = b;
 		this.operator = op;
+		// Children cache their own hashes, so hashing trees bottom-up stays linear
+		this.hash = (31 * a.hashCode() + op.hashCode()) * 31 + b.hashCode();
 	}
 
 	@Override
@@ -45,6 +51,24 @@ public class OperatorExpression extends Expression {
 		return ctx.applyOperator(objA, operator, objB);
 	}
 
+	@Override
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables, Executor executor) {
+		CompletableFuture<Object> futureA = a.evalAsync(ctx, variables, executor);
+		CompletableFuture<Object> futureB = b.evalAsync(ctx, variables, executor);
+		return futureA.thenCombine(futureB, (objA, objB) -> ctx.applyOperator(objA, operator, objB));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		return obj instanceof OperatorExpression op && op.getClass() == getClass() && hash == op.hash && operator == op.operator && a.equals(op.a) && b.equals(op.b);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
 	@Override
 	public String toString() {
 		return "(" + a + " " + operator.symbol + " " + b + ")";
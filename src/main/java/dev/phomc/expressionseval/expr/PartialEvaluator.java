@@ -0,0 +1,124 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+
+/**
+ * Specialize expressions against variables that are known ahead of time.
+ */
+public final class PartialEvaluator {
+	private PartialEvaluator() {}
+
+	/**
+	 * Substitute known variables and evaluate everything that becomes constant. Function calls are only
+	 * evaluated if the function is pure (see {@link EvalContext#isPure(Object)}). Operations that fail while
+	 * folding are kept, so they still fail when the residual expression is evaluated.
+	 * @param expr Expression to specialize.
+	 * @param knownBindings Known variables. Variables with {@code null} value are treated as unknown.
+	 * @param ctx Context used to evaluate constant parts. Must be the same (or equivalent) context used to
+	 * evaluate the residual expression.
+	 * @return Residual expression, which might be the same instance if nothing can be specialized.
+	 */
+	public static Expression specialize(Expression expr, VariablesInterface knownBindings, EvalContext ctx) {
+		if (expr instanceof Symbol sym) {
+			if (isRoot(sym)) {
+				if (knownBindings.get(sym.name) == null) return sym;
+				return new Constant(ctx.propertyOf(null, sym.name, knownBindings));
+			}
+
+			Expression target = specialize(sym.target, knownBindings, ctx);
+
+			if (target instanceof Constant c && c.val != null) {
+				try {
+					return new Constant(ctx.propertyOf(c.val, sym.name, knownBindings));
+				} catch (RuntimeException e) {
+					// Keep it for runtime
+				}
+			}
+
+			return target == sym.target? sym : new Symbol(target, sym.name);
+		}
+
+		if (expr instanceof OperatorExpression op) {
+			Expression a = specialize(op.a, knownBindings, ctx);
+			Expression b = specialize(op.b, knownBindings, ctx);
+
+			if (a instanceof Constant ca && b instanceof Constant cb) {
+				try {
+					return new Constant(ctx.applyOperator(ca.val, op.operator, cb.val));
+				} catch (RuntimeException e) {
+					// Keep it for runtime
+				}
+			}
+
+			return a == op.a && b == op.b? op : new OperatorExpression(a, op.operator, b);
+		}
+
+		if (expr instanceof FunctionExpression func) {
+			Expression target = specialize(func.target, knownBindings, ctx);
+			Expression[] parameters = new Expression[func.parameters.length];
+			boolean changed = target != func.target;
+
+			for (int i = 0; i < parameters.length; i++) {
+				parameters[i] = specialize(func.parameters[i], knownBindings, ctx);
+				changed |= parameters[i] != func.parameters[i];
+			}
+
+			if (target instanceof Constant c && c.val != null && ctx.isPure(c.val) && allConstants(parameters)) {
+				Object[] values = new Object[parameters.length];
+				for (int i = 0; i < values.length; i++) values[i] = ((Constant) parameters[i]).val;
+
+				try {
+					return new Constant(ctx.functionCall(c.val, values));
+				} catch (RuntimeException e) {
+					// Keep it for runtime
+				}
+			}
+
+			return changed? new FunctionExpression(target, parameters) : func;
+		}
+
+		return expr;
+	}
+
+	/**
+	 * Specialize and compile expression.
+	 * @see #specialize(Expression, VariablesInterface, EvalContext)
+	 */
+	public static VirtualMachineExpression specializeAndCompile(Expression expr, VariablesInterface knownBindings, EvalContext ctx) {
+		return VirtualMachineExpression.compile(specialize(expr, knownBindings, ctx));
+	}
+
+	private static boolean allConstants(Expression[] exprs) {
+		for (Expression expr : exprs) if (!(expr instanceof Constant)) return false;
+		return true;
+	}
+
+	static boolean isRoot(Symbol sym) {
+		return sym.target instanceof Constant c && c.val == null;
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import java.util.Arrays;
+import java.util.List;
+
+import dev.phomc.expressionseval.expr.VirtualMachineExpression.ArithmeticConstInstruction;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression.ArithmeticInstruction;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression.CallInstruction;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression.FunctionInstruction;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression.Instruction;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression.LoadVariableInstruction;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression.PropertyChainInstruction;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression.PushConstInstruction;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression.SymbolInstruction;
+
+/**
+ * Fuse common instruction sequences of {@link VirtualMachineExpression} into superinstructions:
+ * <ul>
+ * <li>{@code push null, push 'x', property} to {@code load x}</li>
+ * <li>{@code load x, push 'y', property, push 'z', property} to {@code load x.y.z}</li>
+ * <li>{@code push 2, operator *} to {@code operator * 2}</li>
+ * <li>{@code push 2, call} to {@code call/2}</li>
+ * </ul>
+ * Each fused sequence has the same effect on the stack and the same calls to context, so results don't
+ * change.
+ */
+final class PeepholeOptimizer {
+	private PeepholeOptimizer() {}
+
+	/**
+	 * Optimize code in place.
+	 * @param code Code.
+	 */
+	static void optimize(List<Instruction> code) {
+		Instruction[] in = code.toArray(Instruction[]::new);
+		code.clear();
+
+		for (Instruction instr : in) {
+			code.add(instr);
+			while (reduce(code));
+		}
+	}
+
+	/**
+	 * Fuse instructions at the end of code.
+	 * @return Whether any instruction was fused.
+	 */
+	private static boolean reduce(List<Instruction> code) {
+		int n = code.size();
+		if (n < 2) return false;
+		Instruction last = code.get(n - 1);
+		Instruction prev = code.get(n - 2);
+
+		if (last == SymbolInstruction.INSTR && prev instanceof PushConstInstruction push && push.val instanceof String name) {
+			Instruction target = n >= 3? code.get(n - 3) : null;
+
+			if (target instanceof PushConstInstruction nul && nul.val == null) {
+				replace(code, 3, new LoadVariableInstruction(name));
+			} else if (target instanceof LoadVariableInstruction load) {
+				replace(code, 3, new PropertyChainInstruction(true, new String[] { load.name, name }));
+			} else if (target instanceof PropertyChainInstruction chain) {
+				String[] names = Arrays.copyOf(chain.names, chain.names.length + 1);
+				names[chain.names.length] = name;
+				replace(code, 3, new PropertyChainInstruction(chain.fromRoot, names));
+			} else {
+				replace(code, 2, new PropertyChainInstruction(false, new String[] { name }));
+			}
+
+			return true;
+		}
+
+		if (last == FunctionInstruction.INSTR && prev instanceof PushConstInstruction push && push.val instanceof Integer arity) {
+			replace(code, 2, new CallInstruction(arity));
+			return true;
+		}
+
+		if (last instanceof ArithmeticInstruction op && prev instanceof PushConstInstruction push && n >= 3) {
+			replace(code, 2, new ArithmeticConstInstruction(op.operator, push.val));
+			return true;
+		}
+
+		return false;
+	}
+
+	private static void replace(List<Instruction> code, int count, Instruction instr) {
+		int n = code.size();
+		code.subList(n - count, n).clear();
+		code.add(instr);
+	}
+}
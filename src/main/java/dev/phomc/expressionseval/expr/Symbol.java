@@ -24,16 +24,21 @@
 
 package dev.phomc.expressionseval.expr;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import dev.phomc.expressionseval.EvalContext;
 import dev.phomc.expressionseval.VariablesInterface;
 
 public class Symbol extends Expression {
 	public final Expression target;
 	public final String name;
+	private final int hash;
 
 	public Symbol(Expression target, String name) {
 		this.target = target;
 		this.name = name;
+		this.hash = 31 * target.hashCode() + name.hashCode();
 	}
 
 	@Override
@@ -41,6 +46,22 @@ public class Symbol extends Expression {
 		return ctx.propertyOf(target.eval(ctx, variables), name, variables);
 	}
 
+	@Override
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables, Executor executor) {
+		return target.evalAsync(ctx, variables, executor).thenApply(src -> ctx.propertyOf(src, name, variables));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		return obj instanceof Symbol sym && sym.getClass() == getClass() && hash == sym.hash && name.equals(sym.name) && target.equals(sym.target);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
 	@Override
 	public String toString() {
 		return target.toString() + "." + name;
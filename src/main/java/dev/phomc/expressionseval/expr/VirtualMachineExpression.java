@@ -24,13 +24,21 @@
 
 package dev.phomc.expressionseval.expr;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import dev.phomc.expressionseval.EvalContext;
 import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.ScopedVariables;
 import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.jfr.CompileEvent;
+import dev.phomc.expressionseval.jfr.EvalEvent;
+import jdk.jfr.FlightRecorder;
 
 /**
  * Expression implemented as virtual machine to (potentially) reduce RAM usage and CPU cycles with
@@ -39,57 +47,286 @@ import dev.phomc.expressionseval.VariablesInterface;
  *
  */
 public class VirtualMachineExpression extends Expression {
-	// TODO: Expression optimizer
-
 	public final List<Instruction> code = new ArrayList<>();
 
+	/**
+	 * Source text of this expression, or {@code null} if it wasn't compiled from string. Only used for
+	 * diagnostics.
+	 */
+	public String source;
+
+	private volatile ExpressionProfile profile;
+	private volatile Expression decompiled;
+
 	@Override
 	public Object eval(EvalContext ctx, VariablesInterface variables) {
-		Stack<Object> stack = new Stack<>();
-		for (Instruction instr : code) instr.execute(ctx, variables, stack);
-		return stack.empty()? null : stack.pop();
+		ExpressionProfile profile = this.profile;
+		if (profile != null) return profile.eval(ctx, variables);
+		if (FlightRecorder.isInitialized() && EvalEvent.isTypeEnabled()) return evalWithEvent(ctx, variables);
+		return execute(ctx, variables);
+	}
+
+	/**
+	 * Evaluate this expression asynchronously. Operand stack can't be suspended while waiting for function
+	 * calls, so the code is decompiled to expression tree once, which is then evaluated asynchronously.
+	 * @see Expression#evalAsync(EvalContext, VariablesInterface, Executor)
+	 */
+	@Override
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables, Executor executor) {
+		Expression tree = decompiled;
+		if (tree == null) decompiled = tree = decompile();
+		return tree.evalAsync(ctx, variables, executor);
+	}
+
+	/**
+	 * Convert code back to expression tree. Scoped variables are converted to root symbols, which are
+	 * evaluated through {@link EvalContext#propertyOf(Object, String, VariablesInterface)}.
+	 * @return Expression tree that is equivalent to this expression.
+	 */
+	public Expression decompile() {
+		Deque<Expression> stack = new ArrayDeque<>();
+		for (Instruction instr : code) instr.decompile(stack);
+		if (stack.size() > 1) throw new IllegalStateException("Code leaves " + stack.size() + " values on stack");
+		return stack.isEmpty()? Constant.NULL : stack.pop();
+	}
+
+	private Object execute(EvalContext ctx, VariablesInterface variables) {
+		Frame frame = Frame.acquire();
+
+		try {
+			for (int i = 0, n = code.size(); i < n; i++) code.get(i).execute(ctx, variables, frame);
+			return frame.isEmpty()? null : frame.pop();
+		} finally {
+			frame.release();
+		}
+	}
+
+	/**
+	 * Evaluate this expression within budget. Instructions are counted as they are executed, and deadline is
+	 * checked after every function call and every few instructions, so the overhead is a counter decrement per
+	 * instruction. Profiling and flight recorder events are skipped for budgeted evaluations.
+	 * @param ctx Evaluation context.
+	 * @param variables Variables.
+	 * @param budget Limits of this evaluation.
+	 * @return Result of evaluation.
+	 * @throws BudgetExceededException if evaluation exceeds the budget. Function that is running when deadline
+	 * passes is not interrupted; the exception is thrown after it returns.
+	 */
+	public Object eval(EvalContext ctx, VariablesInterface variables, EvalBudget budget) {
+		long remaining = budget.maxInstructions;
+		boolean hasDeadline = budget.hasDeadline();
+		long start = hasDeadline? System.nanoTime() : 0;
+		Frame frame = Frame.acquire();
+
+		try {
+			for (int i = 0, n = code.size(); i < n; i++) {
+				if (remaining-- == 0) throw new BudgetExceededException(BudgetExceededException.Kind.INSTRUCTIONS, budget.maxInstructions, budget.maxInstructions + 1, "Instruction budget of " + budget.maxInstructions + " exceeded in " + describe());
+				Instruction instr = code.get(i);
+				instr.execute(ctx, variables, frame);
+
+				if (hasDeadline && (instr instanceof FunctionInstruction || instr instanceof CallInstruction || i % EvalBudget.DEADLINE_CHECK_INTERVAL == 0)) {
+					long elapsed = System.nanoTime() - start;
+					if (elapsed > budget.timeoutNanos) throw new BudgetExceededException(BudgetExceededException.Kind.DEADLINE, budget.timeoutNanos, elapsed, "Deadline of " + budget.timeoutNanos + " ns exceeded after " + elapsed + " ns in " + describe());
+				}
+			}
+
+			return frame.isEmpty()? null : frame.pop();
+		} finally {
+			frame.release();
+		}
+	}
+
+	private Object evalWithEvent(EvalContext ctx, VariablesInterface variables) {
+		EvalEvent event = new EvalEvent();
+		event.begin();
+		Object result = execute(ctx, variables);
+		event.end();
+		if (event.shouldCommit()) {
+			event.expression = describe();
+			event.instructionCount = code.size();
+			event.commit();
+		}
+
+		return result;
+	}
+
+	private String describe() {
+		return source != null? source : "<" + code.size() + " instructions>";
+	}
+
+	/**
+	 * Start profiling this expression. Profiling can be enabled and disabled at any time, and costs nothing
+	 * but a field read while disabled.
+	 * @param sampleInterval Time 1 in every {@code sampleInterval} evaluations.
+	 * @return New profile that collects data from now on.
+	 */
+	public ExpressionProfile enableProfiling(int sampleInterval) {
+		ExpressionProfile profile = new ExpressionProfile(this, sampleInterval);
+		this.profile = profile;
+		return profile;
+	}
+
+	public void disableProfiling() {
+		this.profile = null;
+	}
+
+	/**
+	 * @return Current profile, or {@code null} if profiling is disabled.
+	 */
+	public ExpressionProfile getProfile() {
+		return profile;
 	}
 
 	public static VirtualMachineExpression compile(Expression expr) {
+		return compile(expr, null);
+	}
+
+	/**
+	 * Compile expression with variables layout. Root variables declared in the layout (or its parents) are
+	 * resolved to scope slots at compile time and read directly from {@link ScopedVariables} with the same
+	 * layout, skipping {@link EvalContext#propertyOf(Object, String, VariablesInterface)}. Other variables
+	 * interfaces are still evaluated through the context.
+	 * @param expr Expression to compile.
+	 * @param layout Layout of scopes that will be used to evaluate this expression, or {@code null}.
+	 * @return Compiled expression.
+	 */
+	public static VirtualMachineExpression compile(Expression expr, ScopedVariables.Layout layout) {
+		return compile(expr, layout, null, true);
+	}
+
+	/**
+	 * @param expr Expression to compile.
+	 * @param layout Layout of scopes, or {@code null}.
+	 * @param optimize Whether to fuse common instruction sequences into superinstructions with
+	 * {@link PeepholeOptimizer}. Unoptimized code is mostly useful for comparison and debugging.
+	 * @return Compiled expression.
+	 * @see #compile(Expression, ScopedVariables.Layout)
+	 */
+	public static VirtualMachineExpression compile(Expression expr, ScopedVariables.Layout layout, boolean optimize) {
+		return compile(expr, layout, null, optimize);
+	}
+
+	static VirtualMachineExpression compile(Expression expr, ScopedVariables.Layout layout, String source) {
+		return compile(expr, layout, source, true);
+	}
+
+	static VirtualMachineExpression compile(Expression expr, ScopedVariables.Layout layout, String source, boolean optimize) {
+		CompileEvent event = new CompileEvent();
+		event.begin();
+
 		VirtualMachineExpression vm = new VirtualMachineExpression();
-		compile(expr, vm);
+		vm.source = source;
+		compile(expr, vm, layout);
+		if (optimize) PeepholeOptimizer.optimize(vm.code);
+		((ArrayList<Instruction>) vm.code).trimToSize();
+
+		if (event.shouldCommit()) {
+			event.expression = source != null? source : expr.toString();
+			event.instructionCount = vm.code.size();
+			event.commit();
+		}
+
 		return vm;
 	}
 
-	private static void compile(Expression expr, VirtualMachineExpression vm) {
+	private static void compile(Expression expr, VirtualMachineExpression vm, ScopedVariables.Layout layout) {
 		if (expr instanceof Constant c) {
 			vm.code.add(new PushConstInstruction(c.val));
 			return;
 		}
 
 		if (expr instanceof OperatorExpression op) {
-			compile(op.a, vm);
-			compile(op.b, vm);
+			compile(op.a, vm, layout);
+			compile(op.b, vm, layout);
 			vm.code.add(new ArithmeticInstruction(op.operator));
 			return;
 		}
 
 		if (expr instanceof Symbol sym) {
-			compile(sym.target, vm);
+			ScopedVariables.Slot slot;
+
+			if (layout != null && sym.target instanceof Constant c && c.val == null && (slot = layout.resolve(sym.name)) != null) {
+				vm.code.add(new ScopedVariableInstruction(layout, slot));
+				return;
+			}
+
+			compile(sym.target, vm, layout);
 			vm.code.add(new PushConstInstruction(sym.name));
 			vm.code.add(SymbolInstruction.INSTR);
+			return;
 		}
 
 		if (expr instanceof FunctionExpression func) {
 			// push function, push param, push param..., push length, call
-			compile(func.target, vm); // push function
-			for (Expression paramExpr : func.parameters) compile(paramExpr, vm);
+			compile(func.target, vm, layout); // push function
+			for (Expression paramExpr : func.parameters) compile(paramExpr, vm, layout);
 			vm.code.add(new PushConstInstruction(func.parameters.length));
 			vm.code.add(FunctionInstruction.INSTR);
 		}
 	}
 
+	/**
+	 * Operand stack of virtual machine. Each thread reuses its own frame, so evaluating doesn't allocate a new
+	 * stack every time. Evaluating another expression while the frame is in use (from function call, for
+	 * example) uses a new frame.
+	 */
+	public static final class Frame {
+		private static final ThreadLocal<Frame> CACHED = ThreadLocal.withInitial(Frame::new);
+
+		private Object[] stack = new Object[16];
+		private int size;
+		private boolean inUse;
+
+		public static Frame acquire() {
+			Frame frame = CACHED.get();
+			if (frame.inUse) frame = new Frame();
+			frame.inUse = true;
+			return frame;
+		}
+
+		public void release() {
+			// Popped slots are already cleared, only leftovers from failed evaluation remain
+			Arrays.fill(stack, 0, size, null);
+			size = 0;
+			inUse = false;
+		}
+
+		public void push(Object val) {
+			if (size == stack.length) stack = Arrays.copyOf(stack, size * 2);
+			stack[size++] = val;
+		}
+
+		public Object pop() {
+			Object val = stack[--size];
+			stack[size] = null;
+			return val;
+		}
+
+		public Object peek() {
+			return stack[size - 1];
+		}
+
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		public int size() {
+			return size;
+		}
+	}
+
 	// Instructions
 	protected static abstract class Instruction {
 		// TODO: implement loading expression from bytes
 		// public abstract int getInstructionId();
 		// public abstract void writeToStream(DataOutput stream) throws IOException;
-		public abstract void execute(EvalContext ctx, VariablesInterface variables, Stack<Object> stack);
+		public abstract void execute(EvalContext ctx, VariablesInterface variables, Frame stack);
+
+		/**
+		 * Apply this instruction to the stack of expressions instead of values.
+		 * @param stack Expressions stack.
+		 */
+		public abstract void decompile(Deque<Expression> stack);
 	}
 
 	protected static class PushConstInstruction extends Instruction {
@@ -100,9 +337,19 @@ public class VirtualMachineExpression extends Expression {
 		}
 
 		@Override
-		public void execute(EvalContext ctx, VariablesInterface variables, Stack<Object> stack) {
+		public void execute(EvalContext ctx, VariablesInterface variables, Frame stack) {
 			stack.push(val);
 		}
+
+		@Override
+		public void decompile(Deque<Expression> stack) {
+			stack.push(val == null? Constant.NULL : new Constant(val));
+		}
+
+		@Override
+		public String toString() {
+			return "push " + (val instanceof String? "'" + val + "'" : val);
+		}
 	}
 
 	protected static class PushVariableInstruction extends Instruction {
@@ -113,9 +360,45 @@ public class VirtualMachineExpression extends Expression {
 		}
 
 		@Override
-		public void execute(EvalContext ctx, VariablesInterface variables, Stack<Object> stack) {
+		public void execute(EvalContext ctx, VariablesInterface variables, Frame stack) {
 			stack.push(variables.get(name));
 		}
+
+		@Override
+		public void decompile(Deque<Expression> stack) {
+			stack.push(new Symbol(Constant.NULL, name));
+		}
+
+		@Override
+		public String toString() {
+			return "variable " + name;
+		}
+	}
+
+	protected static class ScopedVariableInstruction extends Instruction {
+		public final ScopedVariables.Layout layout;
+		public final ScopedVariables.Slot slot;
+
+		public ScopedVariableInstruction(ScopedVariables.Layout layout, ScopedVariables.Slot slot) {
+			this.layout = layout;
+			this.slot = slot;
+		}
+
+		@Override
+		public void execute(EvalContext ctx, VariablesInterface variables, Frame stack) {
+			if (variables instanceof ScopedVariables scope && scope.layout == layout) stack.push(scope.get(slot));
+			else stack.push(ctx.propertyOf(null, slot.name, variables));
+		}
+
+		@Override
+		public void decompile(Deque<Expression> stack) {
+			stack.push(new Symbol(Constant.NULL, slot.name));
+		}
+
+		@Override
+		public String toString() {
+			return "scoped " + slot;
+		}
 	}
 
 	protected static class ArithmeticInstruction extends Instruction {
@@ -126,34 +409,193 @@ public class VirtualMachineExpression extends Expression {
 		}
 
 		@Override
-		public void execute(EvalContext ctx, VariablesInterface variables, Stack<Object> stack) {
+		public void execute(EvalContext ctx, VariablesInterface variables, Frame stack) {
 			Object b = stack.pop();
 			Object a = stack.pop();
 			stack.push(ctx.applyOperator(a, operator, b));
 		}
+
+		@Override
+		public void decompile(Deque<Expression> stack) {
+			Expression b = stack.pop();
+			Expression a = stack.pop();
+			stack.push(new OperatorExpression(a, operator, b));
+		}
+
+		@Override
+		public String toString() {
+			return "operator " + operator.symbol;
+		}
 	}
 
 	protected static class SymbolInstruction extends Instruction {
 		public static final SymbolInstruction INSTR = new SymbolInstruction();
 
 		@Override
-		public void execute(EvalContext ctx, VariablesInterface variables, Stack<Object> stack) {
+		public void execute(EvalContext ctx, VariablesInterface variables, Frame stack) {
 			String symbol = (String) stack.pop();
 			Object target = stack.pop();
 			stack.push(ctx.propertyOf(target, symbol, variables));
 		}
+
+		@Override
+		public void decompile(Deque<Expression> stack) {
+			String symbol = (String) ((Constant) stack.pop()).val;
+			Expression target = stack.pop();
+			stack.push(new Symbol(target, symbol));
+		}
+
+		@Override
+		public String toString() {
+			return "property";
+		}
 	}
 
 	protected static class FunctionInstruction extends Instruction {
 		public static final FunctionInstruction INSTR = new FunctionInstruction();
 
 		@Override
-		public void execute(EvalContext ctx, VariablesInterface variables, Stack<Object> stack) {
+		public void execute(EvalContext ctx, VariablesInterface variables, Frame stack) {
 			int length = (int) stack.pop();
 			Object[] parameters = new Object[length];
 			for (int i = length - 1; i >= 0; i--) parameters[i] = stack.pop();
 			Object function = stack.pop();
 			stack.push(ctx.functionCall(function, parameters));
 		}
+
+		@Override
+		public void decompile(Deque<Expression> stack) {
+			int length = (int) ((Constant) stack.pop()).val;
+			Expression[] parameters = new Expression[length];
+			for (int i = length - 1; i >= 0; i--) parameters[i] = stack.pop();
+			Expression function = stack.pop();
+			stack.push(new FunctionExpression(function, parameters));
+		}
+
+		@Override
+		public String toString() {
+			return "call";
+		}
+	}
+
+	// Superinstructions, see PeepholeOptimizer
+
+	/**
+	 * Push root variable. Same as {@code push null, push 'name', property}.
+	 */
+	protected static class LoadVariableInstruction extends Instruction {
+		public final String name;
+
+		public LoadVariableInstruction(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void execute(EvalContext ctx, VariablesInterface variables, Frame stack) {
+			stack.push(ctx.propertyOf(null, name, variables));
+		}
+
+		@Override
+		public void decompile(Deque<Expression> stack) {
+			stack.push(new Symbol(Constant.NULL, name));
+		}
+
+		@Override
+		public String toString() {
+			return "load " + name;
+		}
+	}
+
+	/**
+	 * Push chain of properties, starting from root variable or from the value on top of the stack. Same as
+	 * {@code push 'name', property} for each name.
+	 */
+	protected static class PropertyChainInstruction extends Instruction {
+		public final boolean fromRoot;
+		public final String[] names;
+
+		public PropertyChainInstruction(boolean fromRoot, String[] names) {
+			this.fromRoot = fromRoot;
+			this.names = names;
+		}
+
+		@Override
+		public void execute(EvalContext ctx, VariablesInterface variables, Frame stack) {
+			Object val = fromRoot? null : stack.pop();
+			for (String name : names) val = ctx.propertyOf(val, name, variables);
+			stack.push(val);
+		}
+
+		@Override
+		public void decompile(Deque<Expression> stack) {
+			Expression expr = fromRoot? Constant.NULL : stack.pop();
+			for (String name : names) expr = new Symbol(expr, name);
+			stack.push(expr);
+		}
+
+		@Override
+		public String toString() {
+			return (fromRoot? "load " : "properties .") + String.join(".", names);
+		}
+	}
+
+	/**
+	 * Apply operator to the value on top of the stack and constant. Same as {@code push val, operator}.
+	 */
+	protected static class ArithmeticConstInstruction extends Instruction {
+		public final Operator operator;
+		public final Object val;
+
+		public ArithmeticConstInstruction(Operator operator, Object val) {
+			this.operator = operator;
+			this.val = val;
+		}
+
+		@Override
+		public void execute(EvalContext ctx, VariablesInterface variables, Frame stack) {
+			stack.push(ctx.applyOperator(stack.pop(), operator, val));
+		}
+
+		@Override
+		public void decompile(Deque<Expression> stack) {
+			stack.push(new OperatorExpression(stack.pop(), operator, val == null? Constant.NULL : new Constant(val)));
+		}
+
+		@Override
+		public String toString() {
+			return "operator " + operator.symbol + " " + (val instanceof String? "'" + val + "'" : val);
+		}
+	}
+
+	/**
+	 * Call function with known number of parameters. Same as {@code push arity, call}.
+	 */
+	protected static class CallInstruction extends Instruction {
+		public final int arity;
+
+		public CallInstruction(int arity) {
+			this.arity = arity;
+		}
+
+		@Override
+		public void execute(EvalContext ctx, VariablesInterface variables, Frame stack) {
+			Object[] parameters = new Object[arity];
+			for (int i = arity - 1; i >= 0; i--) parameters[i] = stack.pop();
+			Object function = stack.pop();
+			stack.push(ctx.functionCall(function, parameters));
+		}
+
+		@Override
+		public void decompile(Deque<Expression> stack) {
+			Expression[] parameters = new Expression[arity];
+			for (int i = arity - 1; i >= 0; i--) parameters[i] = stack.pop();
+			Expression function = stack.pop();
+			stack.push(new FunctionExpression(function, parameters));
+		}
+
+		@Override
+		public String toString() {
+			return "call/" + arity;
+		}
 	}
 }
@@ -0,0 +1,68 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Evaluation of compiled expression. Only evaluations that take longer than threshold (1 ms by default) are
+ * recorded, and the event is not even created unless it is enabled in a running recording (see
+ * {@link #isTypeEnabled()}).
+ */
+@Name("dev.phomc.expressionseval.Eval")
+@Label("Expression Evaluation")
+@Description("Evaluating compiled expression that took longer than threshold")
+@Category("ExpressionsEval")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("1 ms")
+public class EvalEvent extends Event {
+	@Label("Expression")
+	public String expression;
+
+	@Label("Instruction Count")
+	public int instructionCount;
+
+	/**
+	 * Check whether event is enabled in any running recording, without creating the event. Call this only if
+	 * {@link jdk.jfr.FlightRecorder#isInitialized()}, because looking up event type initializes Flight Recorder.
+	 * @return Whether event is enabled.
+	 */
+	public static boolean isTypeEnabled() {
+		return Type.INSTANCE.isEnabled();
+	}
+
+	private static final class Type {
+		static final EventType INSTANCE = EventType.getEventType(EvalEvent.class);
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.registry;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import dev.phomc.expressionseval.expr.Expression;
+
+/**
+ * Registry of named expressions. Every registered expression records evaluation count and latency histogram,
+ * which can be exposed over JMX with {@link #exposeTo(MBeanServer)}.
+ */
+public class ExpressionRegistry {
+	public static final String DEFAULT_DOMAIN = "dev.phomc.expressionseval";
+
+	private final String domain;
+	private final Map<String, RegisteredExpression> expressions = new ConcurrentHashMap<>();
+	private volatile MBeanServer server;
+
+	public ExpressionRegistry(String domain) {
+		this.domain = domain;
+	}
+
+	public ExpressionRegistry() {
+		this(DEFAULT_DOMAIN);
+	}
+
+	/**
+	 * Compile and register expression, replacing existing expression with the same name.
+	 * @param name Name of expression.
+	 * @param source Expression string.
+	 * @return Registered expression.
+	 */
+	public RegisteredExpression register(String name, String source) {
+		return register(name, source, Expression.compile(source));
+	}
+
+	/**
+	 * Register expression, replacing existing expression with the same name. Registering and unregistering are
+	 * synchronized with exposing, so MBean of a name always belongs to its current expression.
+	 * @param name Name of expression.
+	 * @param source Expression string.
+	 * @param expression Expression.
+	 * @return Registered expression.
+	 */
+	public synchronized RegisteredExpression register(String name, String source, Expression expression) {
+		RegisteredExpression registered = new RegisteredExpression(name, source, expression);
+		RegisteredExpression old = expressions.put(name, registered);
+		MBeanServer server = this.server;
+
+		if (server != null) {
+			if (old != null) unregisterMBean(server, old);
+			registerMBean(server, registered);
+		}
+
+		return registered;
+	}
+
+	public RegisteredExpression get(String name) {
+		return expressions.get(name);
+	}
+
+	public synchronized RegisteredExpression unregister(String name) {
+		RegisteredExpression old = expressions.remove(name);
+		MBeanServer server = this.server;
+		if (old != null && server != null) unregisterMBean(server, old);
+		return old;
+	}
+
+	public Collection<RegisteredExpression> expressions() {
+		return expressions.values();
+	}
+
+	/**
+	 * Register statistics of all current and future expressions as MBeans.
+	 * @param server MBean server, usually {@link java.lang.management.ManagementFactory#getPlatformMBeanServer()}.
+	 */
+	public synchronized void exposeTo(MBeanServer server) {
+		if (this.server != null) throw new IllegalStateException("Registry is already exposed");
+		this.server = server;
+		for (RegisteredExpression expr : expressions.values()) registerMBean(server, expr);
+	}
+
+	/**
+	 * Unregister all MBeans registered by this registry.
+	 */
+	public synchronized void unexpose() {
+		MBeanServer server = this.server;
+		if (server == null) return;
+		this.server = null;
+		for (RegisteredExpression expr : expressions.values()) unregisterMBean(server, expr);
+	}
+
+	public ObjectName objectNameOf(String name) {
+		try {
+			return new ObjectName(domain + ":type=Expression,name=" + ObjectName.quote(name));
+		} catch (MalformedObjectNameException e) {
+			throw new IllegalArgumentException("Invalid expression name '" + name + "'", e);
+		}
+	}
+
+	private void registerMBean(MBeanServer server, RegisteredExpression expr) {
+		ObjectName objectName = objectNameOf(expr.name);
+
+		try {
+			try {
+				server.registerMBean(expr.stats, objectName);
+			} catch (InstanceAlreadyExistsException e) {
+				// Registering is synchronized, so existing MBean was not replaced by this registry. It is stale, left
+				// by another registry with the same domain that was not unexposed, and the current expression wins
+				server.unregisterMBean(objectName);
+				server.registerMBean(expr.stats, objectName);
+			}
+		} catch (JMException e) {
+			throw new RuntimeException("Failed to register MBean for expression '" + expr.name + "'", e);
+		}
+	}
+
+	private void unregisterMBean(MBeanServer server, RegisteredExpression expr) {
+		try {
+			server.unregisterMBean(objectNameOf(expr.name));
+		} catch (InstanceNotFoundException e) {
+			// Already unregistered
+		} catch (JMException e) {
+			throw new RuntimeException("Failed to unregister MBean for expression '" + expr.name + "'", e);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.registry;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluation counters and fixed-bucket latency histogram. All counters are {@link LongAdder}, so recording
+ * from many threads doesn't contend on a single cache line.
+ */
+public class ExpressionStats implements ExpressionStatsMBean {
+	private static final long[] BOUNDS = {
+		250, 500,
+		1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+		1_000_000, 2_500_000, 5_000_000, 10_000_000, 25_000_000, 50_000_000, 100_000_000, 1_000_000_000
+	};
+
+	private final String name;
+	private final String source;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+	private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+	public ExpressionStats(String name, String source) {
+		this.name = name;
+		this.source = source;
+		for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+	}
+
+	public void record(long nanos, boolean error) {
+		count.increment();
+		if (error) errors.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+		buckets[bucketOf(nanos)].increment();
+	}
+
+	private static int bucketOf(long nanos) {
+		int low = 0, high = BOUNDS.length;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (nanos <= BOUNDS[mid]) high = mid;
+			else low = mid + 1;
+		}
+
+		return low;
+	}
+
+	@Override
+	public String getName() { return name; }
+
+	@Override
+	public String getSource() { return source; }
+
+	@Override
+	public long getEvaluationCount() { return count.sum(); }
+
+	@Override
+	public long getErrorCount() { return errors.sum(); }
+
+	@Override
+	public long getTotalTimeNanos() { return totalNanos.sum(); }
+
+	@Override
+	public double getMeanTimeNanos() {
+		long count = getEvaluationCount();
+		return count == 0? 0 : (double) getTotalTimeNanos() / count;
+	}
+
+	@Override
+	public long getMaxTimeNanos() { return maxNanos.get(); }
+
+	@Override
+	public long[] getHistogramBoundsNanos() { return BOUNDS.clone(); }
+
+	@Override
+	public long[] getHistogramCounts() {
+		long[] counts = new long[buckets.length];
+		for (int i = 0; i < counts.length; i++) counts[i] = buckets[i].sum();
+		return counts;
+	}
+
+	@Override
+	public long getP50Nanos() { return percentile(0.5); }
+
+	@Override
+	public long getP99Nanos() { return percentile(0.99); }
+
+	/**
+	 * Estimate percentile from histogram.
+	 * @param p Percentile, from 0 to 1.
+	 * @return Upper bound of the bucket containing the percentile, or max time if it is in the last bucket.
+	 */
+	public long percentile(double p) {
+		long[] counts = getHistogramCounts();
+		long total = 0;
+		for (long c : counts) total += c;
+		if (total == 0) return 0;
+
+		long rank = (long) Math.ceil(p * total), seen = 0;
+		for (int i = 0; i < BOUNDS.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) return BOUNDS[i];
+		}
+
+		return getMaxTimeNanos();
+	}
+
+	@Override
+	public void reset() {
+		count.reset();
+		errors.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+		for (LongAdder bucket : buckets) bucket.reset();
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.registry;
+
+/**
+ * Statistics of a {@link RegisteredExpression}, exposed over JMX. All times are in nanoseconds.
+ */
+public interface ExpressionStatsMBean {
+	String getName();
+
+	String getSource();
+
+	long getEvaluationCount();
+
+	long getErrorCount();
+
+	long getTotalTimeNanos();
+
+	double getMeanTimeNanos();
+
+	long getMaxTimeNanos();
+
+	/**
+	 * @return Upper bounds of histogram buckets. The last bucket of {@link #getHistogramCounts()} has no upper
+	 * bound.
+	 */
+	long[] getHistogramBoundsNanos();
+
+	long[] getHistogramCounts();
+
+	/**
+	 * @return Upper bound of the bucket that contains 50th percentile.
+	 */
+	long getP50Nanos();
+
+	/**
+	 * @return Upper bound of the bucket that contains 99th percentile.
+	 */
+	long getP99Nanos();
+
+	void reset();
+}
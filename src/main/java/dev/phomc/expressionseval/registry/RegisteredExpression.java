@@ -0,0 +1,84 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.registry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.Expression;
+
+/**
+ * Named expression that records statistics for every evaluation.
+ */
+public class RegisteredExpression extends Expression {
+	public final String name;
+	public final Expression expression;
+	public final ExpressionStats stats;
+
+	public RegisteredExpression(String name, String source, Expression expression) {
+		this.name = name;
+		this.expression = expression;
+		this.stats = new ExpressionStats(name, source);
+	}
+
+	@Override
+	public Object eval(EvalContext ctx, VariablesInterface variables) {
+		long start = System.nanoTime();
+		boolean error = true;
+
+		try {
+			Object result = expression.eval(ctx, variables);
+			error = false;
+			return result;
+		} finally {
+			stats.record(System.nanoTime() - start, error);
+		}
+	}
+
+	/**
+	 * Statistics record time until the result completes.
+	 */
+	@Override
+	public CompletableFuture<Object> evalAsync(EvalContext ctx, VariablesInterface variables, Executor executor) {
+		long start = System.nanoTime();
+		CompletableFuture<Object> result;
+
+		try {
+			result = expression.evalAsync(ctx, variables, executor);
+		} catch (RuntimeException e) {
+			stats.record(System.nanoTime() - start, true);
+			return CompletableFuture.failedFuture(e);
+		}
+
+		return result.whenComplete((value, error) -> stats.record(System.nanoTime() - start, error != null));
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + expression;
+	}
+}
@@ -0,0 +1,281 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.rules;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import dev.phomc.expressionseval.BooleanEvalContext;
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.CompactExpression;
+import dev.phomc.expressionseval.expr.Constant;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.OperatorExpression;
+import dev.phomc.expressionseval.expr.Symbol;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+
+/**
+ * Match many rules against variables without evaluating every rule. A rule matches when it evaluates to
+ * {@link Boolean#TRUE}.
+ * <p>
+ * Rules are analyzed when added:
+ * <ul>
+ * <li>Comparisons between root variable and constant ({@code price > 100}, {@code level == 3}) are stored in
+ * per-variable indexes. Numbers are compared by value, like {@link BooleanEvalContext}.</li>
+ * <li>Conjunctions ({@code a & b}) that contain such comparison are indexed by that comparison. This assumes
+ * {@code &} is logical and in your context.</li>
+ * <li>Other rules are evaluated for every match.</li>
+ * </ul>
+ * Rules found in indexes are only candidates, and are evaluated to confirm the match, so results are the same as
+ * evaluating every rule as long as indexed comparisons can't evaluate to {@link Boolean#TRUE} when they don't
+ * hold. Use {@link BooleanEvalContext} for rules; {@link dev.phomc.expressionseval.SimpleEvalContext} comparisons
+ * return operands instead of booleans ({@code >} returns the larger operand), so ordering rules never match. When
+ * matching with {@link BooleanEvalContext}, rules that are a single comparison are matched without evaluation.
+ * <p>
+ * Matching costs {@code O(v log n + k)} for {@code v} indexed variables and {@code k} candidates, plus one
+ * evaluation for every fallback rule. Add all rules before matching from multiple threads.
+ * @param <R> Type of rules.
+ */
+public class RuleMatcher<R> {
+	private final List<Entry<R>> rules = new ArrayList<>();
+	private final List<Entry<R>> fallback = new ArrayList<>();
+	private final Map<String, VariableIndex<R>> indexes = new LinkedHashMap<>();
+
+	/**
+	 * Add rule.
+	 * @param rule Rule to return when expression matches.
+	 * @param expr Expression tree, compiled expression or compact expression.
+	 */
+	public void add(R rule, Expression expr) {
+		Entry<R> entry = new Entry<>(rules.size(), rule, expr);
+		rules.add(entry);
+
+		Expression tree = treeOf(expr);
+		Comparison comparison = Comparison.of(tree);
+
+		if (comparison != null) {
+			entry.comparison = true;
+			indexOf(comparison.variable).add(comparison, entry);
+			return;
+		}
+
+		if (tree instanceof OperatorExpression op && op.operator == Operator.AND) {
+			comparison = findConjunct(op);
+
+			if (comparison != null) {
+				indexOf(comparison.variable).add(comparison, entry);
+				return;
+			}
+		}
+
+		fallback.add(entry);
+	}
+
+	public int size() {
+		return rules.size();
+	}
+
+	/**
+	 * @return Number of rules that are evaluated for every match.
+	 */
+	public int fallbackSize() {
+		return fallback.size();
+	}
+
+	/**
+	 * @param ctx Evaluation context.
+	 * @param variables Variables.
+	 * @return Matched rules, in the order they were added.
+	 */
+	public List<R> match(EvalContext ctx, VariablesInterface variables) {
+		BitSet matched = new BitSet(rules.size());
+		boolean exact = ctx instanceof BooleanEvalContext;
+
+		for (Map.Entry<String, VariableIndex<R>> index : indexes.entrySet()) {
+			Object value = ctx.propertyOf(null, index.getKey(), variables);
+			index.getValue().forCandidates(value, entry -> {
+				if ((exact && entry.comparison) || entry.expr.eval(ctx, variables) == Boolean.TRUE) matched.set(entry.id);
+			});
+		}
+
+		for (Entry<R> entry : fallback) {
+			if (entry.expr.eval(ctx, variables) == Boolean.TRUE) matched.set(entry.id);
+		}
+
+		List<R> result = new ArrayList<>(matched.cardinality());
+		for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) result.add(rules.get(i).rule);
+		return result;
+	}
+
+	private VariableIndex<R> indexOf(String variable) {
+		return indexes.computeIfAbsent(variable, k -> new VariableIndex<>());
+	}
+
+	private static Expression treeOf(Expression expr) {
+		if (expr instanceof VirtualMachineExpression vm) return vm.decompile();
+		if (expr instanceof CompactExpression compact) return compact.toExpression();
+		return expr;
+	}
+
+	private static Comparison findConjunct(OperatorExpression and) {
+		for (Expression operand : new Expression[] { and.a, and.b }) {
+			Comparison comparison = Comparison.of(operand);
+			if (comparison != null) return comparison;
+			if (operand instanceof OperatorExpression op && op.operator == Operator.AND && (comparison = findConjunct(op)) != null) return comparison;
+		}
+
+		return null;
+	}
+
+	private static class Entry<R> {
+		final int id;
+		final R rule;
+		final Expression expr;
+
+		/**
+		 * Whether rule is a single indexed comparison, so matching the index is enough with
+		 * {@link BooleanEvalContext}.
+		 */
+		boolean comparison;
+
+		Entry(int id, R rule, Expression expr) {
+			this.id = id;
+			this.rule = rule;
+			this.expr = expr;
+		}
+	}
+
+	private record Comparison(String variable, Operator operator, Object constant) {
+		static Comparison of(Expression expr) {
+			if (!(expr instanceof OperatorExpression op) || !isComparison(op.operator)) return null;
+			if (isRoot(op.a) && op.b instanceof Constant c) return of(((Symbol) op.a).name, op.operator, c.val);
+			if (isRoot(op.b) && op.a instanceof Constant c) return of(((Symbol) op.b).name, flip(op.operator), c.val);
+			return null;
+		}
+
+		private static Comparison of(String variable, Operator operator, Object constant) {
+			if (constant == null || isNaN(constant)) return null;
+			if (operator != Operator.EQUALS && !(constant instanceof Number)) return null;
+			return new Comparison(variable, operator, constant);
+		}
+
+		private static boolean isRoot(Expression expr) {
+			return expr instanceof Symbol sym && sym.target instanceof Constant c && c.val == null;
+		}
+
+		private static boolean isComparison(Operator op) {
+			return switch (op) {
+			case EQUALS, GREATER_THAN, GREATER_OR_EQU, LESS_THAN, LESS_OR_EQU -> true;
+			default -> false;
+			};
+		}
+
+		private static Operator flip(Operator op) {
+			return switch (op) {
+			case GREATER_THAN -> Operator.LESS_THAN;
+			case GREATER_OR_EQU -> Operator.LESS_OR_EQU;
+			case LESS_THAN -> Operator.GREATER_THAN;
+			case LESS_OR_EQU -> Operator.GREATER_OR_EQU;
+			default -> op;
+			};
+		}
+	}
+
+	private static boolean isNaN(Object value) {
+		return (value instanceof Double || value instanceof Float) && Double.isNaN(((Number) value).doubleValue());
+	}
+
+	private static boolean isIntegral(Number n) {
+		return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+	}
+
+	/**
+	 * Normalize numbers for equality index, so numbers that are equal by value have the same key. Integers and
+	 * whole decimals in {@code long} range become {@link Long}, other numbers become {@link Double}.
+	 */
+	private static Object equalityKey(Object value) {
+		if (!(value instanceof Number n)) return value;
+		if (isIntegral(n)) return n.longValue();
+		double d = n.doubleValue();
+		if (d >= -0x1p63 && d < 0x1p63 && d == Math.rint(d)) return (long) d;
+		return d;
+	}
+
+	/**
+	 * Indexes of comparisons against one variable. Each ordering comparison is a half-bounded interval of
+	 * values, so thresholds are kept sorted and matching rules are found with one range view.
+	 */
+	private static class VariableIndex<R> {
+		final Map<Object, List<Entry<R>>> equals = new HashMap<>();
+		final NavigableMap<Number, List<Entry<R>>> greaterThan = new TreeMap<>(BooleanEvalContext::compareNumbers);
+		final NavigableMap<Number, List<Entry<R>>> greaterOrEqual = new TreeMap<>(BooleanEvalContext::compareNumbers);
+		final NavigableMap<Number, List<Entry<R>>> lessThan = new TreeMap<>(BooleanEvalContext::compareNumbers);
+		final NavigableMap<Number, List<Entry<R>>> lessOrEqual = new TreeMap<>(BooleanEvalContext::compareNumbers);
+
+		void add(Comparison comparison, Entry<R> entry) {
+			if (comparison.operator == Operator.EQUALS) {
+				equals.computeIfAbsent(equalityKey(comparison.constant), k -> new ArrayList<>()).add(entry);
+				return;
+			}
+
+			NavigableMap<Number, List<Entry<R>>> map = switch (comparison.operator) {
+			case GREATER_THAN -> greaterThan;
+			case GREATER_OR_EQU -> greaterOrEqual;
+			case LESS_THAN -> lessThan;
+			case LESS_OR_EQU -> lessOrEqual;
+			default -> throw new IllegalArgumentException(comparison.operator.toString());
+			};
+
+			map.computeIfAbsent((Number) comparison.constant, k -> new ArrayList<>()).add(entry);
+		}
+
+		void forCandidates(Object value, Consumer<Entry<R>> consumer) {
+			if (value == null) return;
+			List<Entry<R>> equal = equals.get(equalityKey(value));
+			if (equal != null) equal.forEach(consumer);
+			if (!(value instanceof Number) || isNaN(value)) return;
+
+			Number v = (Number) value;
+			forEach(greaterThan.headMap(v, false).values(), consumer); // variable > threshold
+			forEach(greaterOrEqual.headMap(v, true).values(), consumer);
+			forEach(lessThan.tailMap(v, false).values(), consumer);
+			forEach(lessOrEqual.tailMap(v, true).values(), consumer);
+		}
+
+		private static <R> void forEach(Collection<List<Entry<R>>> lists, Consumer<Entry<R>> consumer) {
+			for (List<Entry<R>> list : lists) list.forEach(consumer);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.stream;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.expr.Expression;
+
+/**
+ * Spliterator that evaluates expression for each record of source spliterator. {@link #tryAdvance(Consumer)}
+ * evaluates records in batches, and {@link #forEachRemaining(Consumer)} evaluates them in a single loop over
+ * the source. Each split has its own variables, so splits can be evaluated in parallel.
+ * @param <R> Type of records.
+ * @param <T> Type of elements.
+ */
+abstract class EvalSpliterator<R, T> implements Spliterator<T>, Consumer<R> {
+	static final int BATCH_SIZE = 256;
+
+	/**
+	 * Returned by {@link #process(Object)} when record is filtered out.
+	 */
+	protected static final Object SKIP = new Object();
+
+	protected final Spliterator<R> source;
+	protected final Expression expr;
+	protected final EvalContext ctx;
+	protected final RecordAccessor<R> accessor;
+	protected final RecordVariables<R> variables;
+
+	private Object[] batch;
+	private int batchIndex, batchSize;
+
+	protected EvalSpliterator(Spliterator<R> source, Expression expr, EvalContext ctx, RecordAccessor<R> accessor) {
+		this.source = source;
+		this.expr = expr;
+		this.ctx = ctx;
+		this.accessor = accessor;
+		this.variables = new RecordVariables<>(accessor);
+	}
+
+	/**
+	 * @param record Record.
+	 * @return Element for this record, or {@link #SKIP}.
+	 */
+	protected abstract Object process(R record);
+
+	protected abstract EvalSpliterator<R, T> split(Spliterator<R> prefix);
+
+	protected Object evalRecord(R record) {
+		variables.record = record;
+		return expr.eval(ctx, variables);
+	}
+
+	@Override
+	public void accept(R record) {
+		Object element = process(record);
+		if (element != SKIP) batch[batchSize++] = element;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		while (batchIndex == batchSize) {
+			if (!fillBatch()) return false;
+		}
+
+		Object element = batch[batchIndex];
+		batch[batchIndex++] = null;
+		action.accept((T) element);
+		return true;
+	}
+
+	private boolean fillBatch() {
+		if (batch == null) batch = new Object[BATCH_SIZE];
+		batchIndex = batchSize = 0;
+
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			if (!source.tryAdvance(this)) {
+				// Don't keep last record reachable after traversal
+				variables.record = null;
+				return batchSize > 0;
+			}
+		}
+
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void forEachRemaining(Consumer<? super T> action) {
+		while (batchIndex < batchSize) {
+			Object element = batch[batchIndex];
+			batch[batchIndex++] = null;
+			action.accept((T) element);
+		}
+
+		source.forEachRemaining(record -> {
+			Object element = process(record);
+			if (element != SKIP) action.accept((T) element);
+		});
+		variables.record = null;
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+		// Buffered elements come before the prefix
+		if (batchIndex < batchSize) return null;
+		Spliterator<R> prefix = source.trySplit();
+		return prefix != null? split(prefix) : null;
+	}
+
+	@Override
+	public long estimateSize() {
+		return source.estimateSize() + (batchSize - batchIndex);
+	}
+
+	static class Filter<R> extends EvalSpliterator<R, R> {
+		Filter(Spliterator<R> source, Expression expr, EvalContext ctx, RecordAccessor<R> accessor) {
+			super(source, expr, ctx, accessor);
+		}
+
+		@Override
+		protected Object process(R record) {
+			Object result = evalRecord(record);
+			if (result == Boolean.TRUE) return record;
+			if (result == null || result == Boolean.FALSE) return SKIP;
+			throw new IllegalStateException("Predicate evaluated to " + result + " instead of a boolean for record: " + record);
+		}
+
+		@Override
+		protected EvalSpliterator<R, R> split(Spliterator<R> prefix) {
+			return new Filter<>(prefix, expr, ctx, accessor);
+		}
+
+		@Override
+		public int characteristics() {
+			return source.characteristics() & ~(SIZED | SUBSIZED);
+		}
+
+		@Override
+		public Comparator<? super R> getComparator() {
+			return source.getComparator();
+		}
+	}
+
+	static class Map<R> extends EvalSpliterator<R, Object> {
+		Map(Spliterator<R> source, Expression expr, EvalContext ctx, RecordAccessor<R> accessor) {
+			super(source, expr, ctx, accessor);
+		}
+
+		@Override
+		protected Object process(R record) {
+			return evalRecord(record);
+		}
+
+		@Override
+		protected EvalSpliterator<R, Object> split(Spliterator<R> prefix) {
+			return new Map<>(prefix, expr, ctx, accessor);
+		}
+
+		@Override
+		public int characteristics() {
+			return source.characteristics() & (ORDERED | SIZED | SUBSIZED | IMMUTABLE | CONCURRENT);
+		}
+	}
+}
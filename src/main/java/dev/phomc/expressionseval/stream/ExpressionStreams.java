@@ -0,0 +1,85 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.stream;
+
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.FunctionExpression;
+import dev.phomc.expressionseval.expr.OperatorExpression;
+import dev.phomc.expressionseval.expr.Symbol;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+
+/**
+ * Filter and project streams of records with expressions. Root variables are read from each record with
+ * {@link RecordAccessor}, without wrapping records in new {@link dev.phomc.expressionseval.VariablesInterface}.
+ * Expression trees are compiled once per stream. Resulting streams are parallel if source stream is parallel.
+ * <pre>{@code
+ * Stream<Order> expensive = ExpressionStreams.filter(orders, Expression.parse("price > 100"), BooleanEvalContext.INSTANCE, Order::field);
+ * }</pre>
+ * Predicates must evaluate to booleans, so filter with a context that returns booleans from comparisons, such as
+ * {@link dev.phomc.expressionseval.BooleanEvalContext}.
+ */
+public final class ExpressionStreams {
+	private ExpressionStreams() {}
+
+	/**
+	 * @param stream Source stream.
+	 * @param predicate Predicate. Records are kept if predicate evaluates to {@link Boolean#TRUE}, and dropped if it
+	 * evaluates to {@link Boolean#FALSE} or {@code null}.
+	 * @param ctx Evaluation context.
+	 * @param accessor Records accessor.
+	 * @return Stream of records that matches predicate. Terminal operations throw {@link IllegalStateException}
+	 * if predicate evaluates to anything else.
+	 */
+	public static <R> Stream<R> filter(Stream<R> stream, Expression predicate, EvalContext ctx, RecordAccessor<R> accessor) {
+		Spliterator<R> source = stream.spliterator();
+		return wrap(stream, new EvalSpliterator.Filter<>(source, compiled(predicate), ctx, accessor));
+	}
+
+	/**
+	 * @param stream Source stream.
+	 * @param expr Expression.
+	 * @param ctx Evaluation context.
+	 * @param accessor Records accessor.
+	 * @return Stream of values of expression for each record.
+	 */
+	public static <R> Stream<Object> map(Stream<R> stream, Expression expr, EvalContext ctx, RecordAccessor<R> accessor) {
+		Spliterator<R> source = stream.spliterator();
+		return wrap(stream, new EvalSpliterator.Map<>(source, compiled(expr), ctx, accessor));
+	}
+
+	private static <T> Stream<T> wrap(Stream<?> stream, Spliterator<T> spliterator) {
+		return StreamSupport.stream(spliterator, stream.isParallel()).onClose(stream::close);
+	}
+
+	private static Expression compiled(Expression expr) {
+		boolean tree = expr instanceof Symbol || expr instanceof OperatorExpression || expr instanceof FunctionExpression;
+		return tree? VirtualMachineExpression.compile(expr) : expr;
+	}
+}
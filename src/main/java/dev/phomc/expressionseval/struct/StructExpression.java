@@ -0,0 +1,403 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.struct;
+
+import java.nio.ByteBuffer;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.SimpleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.Constant;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.OperatorExpression;
+import dev.phomc.expressionseval.expr.Symbol;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+import dev.phomc.expressionseval.struct.StructLayout.Field;
+import dev.phomc.expressionseval.struct.StructLayout.Type;
+
+/**
+ * Expression evaluated directly against records in {@link ByteBuffer}, without copying records to maps.
+ * Root variables are resolved to fields of {@link StructLayout} at compile time.
+ * <p>
+ * Expressions that only use arithmetic operators, numeric constants and fields are compiled to primitive
+ * code, which doesn't box values at all. Numbers are promoted with the same rules as
+ * {@link SimpleEvalContext}, so results are the same as evaluating the expression tree. This is only done
+ * when the context doesn't override {@code applyOperator()} or {@code propertyOf()} of
+ * {@link SimpleEvalContext}. Other expressions are compiled to {@link VirtualMachineExpression} that reads
+ * boxed fields, and variables that are not fields are read from {@code globals}.
+ * <pre>{@code
+ * StructExpression move = StructExpression.compile(Expression.parse("x + vx * dt"), particle, ctx, globals);
+ * move.evalInto(buffer, 0, count, particle.field("x"));
+ * }</pre>
+ */
+public final class StructExpression {
+	public final StructLayout layout;
+	public final Expression tree;
+	private final EvalContext ctx;
+	private final VariablesInterface globals;
+	private final Node node;
+	private final VirtualMachineExpression fallback;
+
+	private StructExpression(StructLayout layout, Expression tree, EvalContext ctx, VariablesInterface globals, Node node) {
+		this.layout = layout;
+		this.tree = tree;
+		this.ctx = ctx;
+		this.globals = globals;
+		this.node = node;
+		this.fallback = node == null? VirtualMachineExpression.compile(tree) : null;
+	}
+
+	/**
+	 * @param expr Expression tree.
+	 * @param layout Layout of records.
+	 * @param ctx Evaluation context.
+	 * @param globals Variables that are not fields, or {@code null}.
+	 * @return Compiled expression.
+	 */
+	public static StructExpression compile(Expression expr, StructLayout layout, EvalContext ctx, VariablesInterface globals) {
+		Node node = hasDefaultArithmetic(ctx)? compile(expr, layout) : null;
+		return new StructExpression(layout, expr, ctx, globals, node);
+	}
+
+	public static StructExpression compile(Expression expr, StructLayout layout, EvalContext ctx) {
+		return compile(expr, layout, ctx, null);
+	}
+
+	/**
+	 * @return Whether this expression is evaluated without boxing.
+	 */
+	public boolean isPrimitive() {
+		return node != null;
+	}
+
+	/**
+	 * @param buffer Buffer.
+	 * @param index Index of record.
+	 * @return Result of evaluation.
+	 */
+	public Object eval(ByteBuffer buffer, int index) {
+		int base = index * layout.stride;
+		if (node == null) return fallback.eval(ctx, new Record(buffer, base));
+
+		return switch (node.type) {
+		case INT -> node.i(buffer, base);
+		case LONG -> node.l(buffer, base);
+		case FLOAT -> node.f(buffer, base);
+		default -> node.d(buffer, base);
+		};
+	}
+
+	/**
+	 * Evaluate record and write the result to one of its fields.
+	 * @param buffer Buffer.
+	 * @param index Index of record.
+	 * @param target Field to write to. The result is converted to the type of this field.
+	 */
+	public void evalInto(ByteBuffer buffer, int index, Field target) {
+		evalInto(buffer, index, index + 1, target);
+	}
+
+	/**
+	 * Evaluate records in range and write the results to one of their fields.
+	 * @param buffer Buffer.
+	 * @param from Index of first record, inclusive.
+	 * @param to Index of last record, exclusive.
+	 * @param target Field to write to. The result is converted to the type of this field.
+	 */
+	public void evalInto(ByteBuffer buffer, int from, int to, Field target) {
+		if (node == null) {
+			Record record = new Record(buffer, 0);
+
+			for (int i = from; i < to; i++) {
+				record.base = i * layout.stride;
+				Object result = fallback.eval(ctx, record);
+				if (!(result instanceof Number n)) throw new IllegalStateException("Expected number but got " + result + " for record " + i);
+				target.write(buffer, record.base, n);
+			}
+
+			return;
+		}
+
+		int offset = target.offset;
+
+		for (int i = from; i < to; i++) {
+			int base = i * layout.stride;
+
+			switch (target.type) {
+			case BYTE -> buffer.put(base + offset, (byte) node.i(buffer, base));
+			case SHORT -> buffer.putShort(base + offset, (short) node.i(buffer, base));
+			case INT -> buffer.putInt(base + offset, node.i(buffer, base));
+			case LONG -> buffer.putLong(base + offset, node.l(buffer, base));
+			case FLOAT -> buffer.putFloat(base + offset, node.f(buffer, base));
+			case DOUBLE -> buffer.putDouble(base + offset, node.d(buffer, base));
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return tree.toString();
+	}
+
+	private static boolean hasDefaultArithmetic(EvalContext ctx) {
+		try {
+			Class<?> type = ctx.getClass();
+			return type.getMethod("applyOperator", Object.class, Operator.class, Object.class).getDeclaringClass() == SimpleEvalContext.class
+					&& type.getMethod("propertyOf", Object.class, String.class, VariablesInterface.class).getDeclaringClass() == SimpleEvalContext.class;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return Primitive node, or {@code null} if expression can't be evaluated without context.
+	 */
+	private static Node compile(Expression expr, StructLayout layout) {
+		if (expr instanceof Constant c) return ConstNode.of(c.val);
+
+		if (expr instanceof Symbol sym && sym.target instanceof Constant c && c.val == null) {
+			Field field = layout.field(sym.name);
+			return field != null? new FieldNode(field) : null;
+		}
+
+		if (expr instanceof OperatorExpression op) {
+			if (op.operator != Operator.ADD && op.operator != Operator.SUBTRACT && op.operator != Operator.MULTIPLY && op.operator != Operator.DIVIDE && op.operator != Operator.POWER) return null;
+			Node a = compile(op.a, layout), b = compile(op.b, layout);
+			if (a == null || b == null) return null;
+			return new BinaryNode(op.operator == Operator.POWER? Type.DOUBLE : promote(a.type, b.type), op.operator, a, b);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Same promotion rules as {@link SimpleEvalContext}: integers stay integers, and floats are promoted to
+	 * double when combined with long or double.
+	 */
+	private static Type promote(Type a, Type b) {
+		boolean floatA = a == Type.FLOAT || a == Type.DOUBLE, floatB = b == Type.FLOAT || b == Type.DOUBLE;
+		if (!floatA && !floatB) return a == Type.LONG || b == Type.LONG? Type.LONG : Type.INT;
+		if (a == Type.DOUBLE || b == Type.DOUBLE || a == Type.LONG || b == Type.LONG) return Type.DOUBLE;
+		return Type.FLOAT;
+	}
+
+	private class Record implements VariablesInterface {
+		private final ByteBuffer buffer;
+		private int base;
+
+		private Record(ByteBuffer buffer, int base) {
+			this.buffer = buffer;
+			this.base = base;
+		}
+
+		@Override
+		public Object get(String varName) {
+			Field field = layout.field(varName);
+			if (field != null) return field.read(buffer, base);
+			return globals != null? globals.get(varName) : null;
+		}
+
+		@Override
+		public boolean contains(String varName) {
+			return layout.field(varName) != null || globals != null && globals.contains(varName);
+		}
+	}
+
+	/**
+	 * Primitive expression node. Each node computes in its own type (one of {@code INT}, {@code LONG},
+	 * {@code FLOAT} and {@code DOUBLE}) and converts to other types when asked.
+	 */
+	private static abstract class Node {
+		final Type type;
+
+		Node(Type type) {
+			this.type = type;
+		}
+
+		abstract int i(ByteBuffer buffer, int base);
+		abstract long l(ByteBuffer buffer, int base);
+		abstract float f(ByteBuffer buffer, int base);
+		abstract double d(ByteBuffer buffer, int base);
+	}
+
+	private static class ConstNode extends Node {
+		final int i;
+		final long l;
+		final float f;
+		final double d;
+
+		private ConstNode(Type type, Number val) {
+			super(type);
+			this.i = val.intValue();
+			this.l = val.longValue();
+			this.f = val.floatValue();
+			this.d = val.doubleValue();
+		}
+
+		static ConstNode of(Object val) {
+			if (val instanceof Integer || val instanceof Short || val instanceof Byte) return new ConstNode(Type.INT, (Number) val);
+			if (val instanceof Long l) return new ConstNode(Type.LONG, l);
+			if (val instanceof Float f) return new ConstNode(Type.FLOAT, f);
+			if (val instanceof Double d) return new ConstNode(Type.DOUBLE, d);
+			return null;
+		}
+
+		@Override
+		int i(ByteBuffer buffer, int base) { return i; }
+
+		@Override
+		long l(ByteBuffer buffer, int base) { return l; }
+
+		@Override
+		float f(ByteBuffer buffer, int base) { return f; }
+
+		@Override
+		double d(ByteBuffer buffer, int base) { return d; }
+	}
+
+	private static class FieldNode extends Node {
+		final Field field;
+		final int offset;
+
+		FieldNode(Field field) {
+			super(field.type == Type.BYTE || field.type == Type.SHORT? Type.INT : field.type);
+			this.field = field;
+			this.offset = field.offset;
+		}
+
+		@Override
+		int i(ByteBuffer buffer, int base) {
+			return switch (field.type) {
+			case BYTE -> buffer.get(base + offset);
+			case SHORT -> buffer.getShort(base + offset);
+			case INT -> buffer.getInt(base + offset);
+			case LONG -> (int) buffer.getLong(base + offset);
+			case FLOAT -> (int) buffer.getFloat(base + offset);
+			case DOUBLE -> (int) buffer.getDouble(base + offset);
+			};
+		}
+
+		@Override
+		long l(ByteBuffer buffer, int base) {
+			return switch (field.type) {
+			case LONG -> buffer.getLong(base + offset);
+			case FLOAT -> (long) buffer.getFloat(base + offset);
+			case DOUBLE -> (long) buffer.getDouble(base + offset);
+			default -> i(buffer, base);
+			};
+		}
+
+		@Override
+		float f(ByteBuffer buffer, int base) {
+			return switch (field.type) {
+			case LONG -> buffer.getLong(base + offset);
+			case FLOAT -> buffer.getFloat(base + offset);
+			case DOUBLE -> (float) buffer.getDouble(base + offset);
+			default -> i(buffer, base);
+			};
+		}
+
+		@Override
+		double d(ByteBuffer buffer, int base) {
+			return switch (field.type) {
+			case LONG -> buffer.getLong(base + offset);
+			case FLOAT -> buffer.getFloat(base + offset);
+			case DOUBLE -> buffer.getDouble(base + offset);
+			default -> i(buffer, base);
+			};
+		}
+	}
+
+	private static class BinaryNode extends Node {
+		final Operator operator;
+		final Node a, b;
+
+		BinaryNode(Type type, Operator operator, Node a, Node b) {
+			super(type);
+			this.operator = operator;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		int i(ByteBuffer buffer, int base) {
+			if (type != Type.INT) return (int) l(buffer, base);
+			int x = a.i(buffer, base), y = b.i(buffer, base);
+
+			return switch (operator) {
+			case ADD -> x + y;
+			case SUBTRACT -> x - y;
+			case MULTIPLY -> x * y;
+			default -> x / y;
+			};
+		}
+
+		@Override
+		long l(ByteBuffer buffer, int base) {
+			if (type == Type.INT) return i(buffer, base);
+			if (type != Type.LONG) return (long) d(buffer, base);
+			long x = a.l(buffer, base), y = b.l(buffer, base);
+
+			return switch (operator) {
+			case ADD -> x + y;
+			case SUBTRACT -> x - y;
+			case MULTIPLY -> x * y;
+			default -> x / y;
+			};
+		}
+
+		@Override
+		float f(ByteBuffer buffer, int base) {
+			if (type == Type.INT) return i(buffer, base);
+			if (type == Type.LONG) return l(buffer, base);
+			if (type == Type.DOUBLE) return (float) d(buffer, base);
+			float x = a.f(buffer, base), y = b.f(buffer, base);
+
+			return switch (operator) {
+			case ADD -> x + y;
+			case SUBTRACT -> x - y;
+			case MULTIPLY -> x * y;
+			default -> x / y;
+			};
+		}
+
+		@Override
+		double d(ByteBuffer buffer, int base) {
+			if (type == Type.INT) return i(buffer, base);
+			if (type == Type.LONG) return l(buffer, base);
+			if (type == Type.FLOAT) return f(buffer, base);
+			double x = a.d(buffer, base), y = b.d(buffer, base);
+
+			return switch (operator) {
+			case ADD -> x + y;
+			case SUBTRACT -> x - y;
+			case MULTIPLY -> x * y;
+			case POWER -> Math.pow(x, y);
+			default -> x / y;
+			};
+		}
+	}
+}
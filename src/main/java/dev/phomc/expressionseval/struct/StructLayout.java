@@ -0,0 +1,188 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.struct;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Layout of fixed-size records stored in {@link ByteBuffer}: name, primitive type and offset of each field,
+ * and stride between records.
+ * <pre>{@code
+ * StructLayout particle = StructLayout.builder()
+ *     .add("x", StructLayout.Type.FLOAT)
+ *     .add("y", StructLayout.Type.FLOAT)
+ *     .add("age", StructLayout.Type.INT)
+ *     .build(); // stride = 12
+ * }</pre>
+ */
+public final class StructLayout {
+	public enum Type {
+		BYTE(1), SHORT(2), INT(4), LONG(8), FLOAT(4), DOUBLE(8);
+
+		public final int size;
+
+		Type(int size) {
+			this.size = size;
+		}
+	}
+
+	public static final class Field {
+		public final String name;
+		public final Type type;
+		public final int offset;
+
+		private Field(String name, Type type, int offset) {
+			this.name = name;
+			this.type = type;
+			this.offset = offset;
+		}
+
+		/**
+		 * Read field as boxed value. Byte and short fields are read as {@link Integer}, which is what arithmetic
+		 * on them produces anyway.
+		 * @param buffer Buffer.
+		 * @param base Offset of record.
+		 * @return Boxed value.
+		 */
+		public Object read(ByteBuffer buffer, int base) {
+			int at = base + offset;
+
+			return switch (type) {
+			case BYTE -> (int) buffer.get(at);
+			case SHORT -> (int) buffer.getShort(at);
+			case INT -> buffer.getInt(at);
+			case LONG -> buffer.getLong(at);
+			case FLOAT -> buffer.getFloat(at);
+			case DOUBLE -> buffer.getDouble(at);
+			};
+		}
+
+		/**
+		 * Write number to field, converting it to field type.
+		 * @param buffer Buffer.
+		 * @param base Offset of record.
+		 * @param value Number.
+		 */
+		public void write(ByteBuffer buffer, int base, Number value) {
+			int at = base + offset;
+
+			switch (type) {
+			case BYTE -> buffer.put(at, value.byteValue());
+			case SHORT -> buffer.putShort(at, value.shortValue());
+			case INT -> buffer.putInt(at, value.intValue());
+			case LONG -> buffer.putLong(at, value.longValue());
+			case FLOAT -> buffer.putFloat(at, value.floatValue());
+			case DOUBLE -> buffer.putDouble(at, value.doubleValue());
+			}
+		}
+
+		@Override
+		public String toString() {
+			return name + ": " + type + " @ " + offset;
+		}
+	}
+
+	public final int stride;
+	private final Map<String, Field> fields;
+
+	private StructLayout(Map<String, Field> fields, int stride) {
+		this.fields = Collections.unmodifiableMap(fields);
+		this.stride = stride;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @param name Name of field.
+	 * @return Field, or {@code null} if there is no field with that name.
+	 */
+	public Field field(String name) {
+		return fields.get(name);
+	}
+
+	public Collection<Field> fields() {
+		return fields.values();
+	}
+
+	/**
+	 * @param buffer Buffer.
+	 * @return Number of complete records in buffer.
+	 */
+	public int count(ByteBuffer buffer) {
+		return buffer.limit() / stride;
+	}
+
+	@Override
+	public String toString() {
+		return "StructLayout" + fields.values() + " stride " + stride;
+	}
+
+	public static final class Builder {
+		private final Map<String, Field> fields = new LinkedHashMap<>();
+		private int end = 0;
+		private int stride = -1;
+
+		private Builder() {}
+
+		/**
+		 * Add field after the last field, aligned to its size.
+		 * @param name Name of field.
+		 * @param type Type of field.
+		 * @return this.
+		 */
+		public Builder add(String name, Type type) {
+			return add(name, type, (end + type.size - 1) / type.size * type.size);
+		}
+
+		public Builder add(String name, Type type, int offset) {
+			if (offset < 0) throw new IllegalArgumentException("Negative offset for '" + name + "'");
+			if (fields.containsKey(name)) throw new IllegalArgumentException("Duplicated field '" + name + "'");
+			fields.put(name, new Field(name, type, offset));
+			end = Math.max(end, offset + type.size);
+			return this;
+		}
+
+		/**
+		 * @param stride Size of each record, including padding. By default, records are packed.
+		 * @return this.
+		 */
+		public Builder stride(int stride) {
+			this.stride = stride;
+			return this;
+		}
+
+		public StructLayout build() {
+			int stride = this.stride == -1? end : this.stride;
+			if (stride < end) throw new IllegalArgumentException("Stride " + stride + " is smaller than fields (" + end + " bytes)");
+			return new StructLayout(new LinkedHashMap<>(fields), stride);
+		}
+	}
+}
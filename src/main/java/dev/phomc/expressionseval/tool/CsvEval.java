@@ -0,0 +1,464 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import dev.phomc.expressionseval.BooleanEvalContext;
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.ScopedVariables;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.ExpressionAnalysis;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+
+/**
+ * Evaluate expression over every row of a CSV file. Input is memory mapped and split into line aligned chunks
+ * that are evaluated in parallel. First line of input is the header, and header names are bound to slots of
+ * compiled expression, so only columns that expression reads are parsed, and rows don't create variables maps.
+ * Output chunks are written in input order.
+ * <p>
+ * In {@link Mode#MAP} mode, each output line is value of expression for the row. In {@link Mode#FILTER} mode,
+ * header and rows that expression evaluates to {@link Boolean#TRUE} are copied to output. Rows that evaluate to
+ * {@code null} are dropped, and any other result fails with {@link IllegalStateException}, so use a context that
+ * returns booleans from comparisons, such as {@link BooleanEvalContext}, which the command line tool uses.
+ * <p>
+ * Cells are unquoted with RFC 4180 rules, but quoted cells can't contain line breaks. Integer cells are
+ * {@link Integer} or {@link Long}, decimal cells are {@link Double}, empty cells are {@code null} and everything
+ * else is {@link String}.
+ * <pre>{@code
+ * java dev.phomc.expressionseval.tool.CsvEval --filter "category == 3" orders.csv matched.csv
+ * }</pre>
+ */
+public final class CsvEval {
+	public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+	private final Expression expression;
+	private final EvalContext context;
+	private final Mode mode;
+	private final byte delimiter;
+	private final int chunkSize;
+	private final int threads;
+
+	public CsvEval(Expression expression, EvalContext context, Mode mode, char delimiter, int chunkSize, int threads) {
+		if (delimiter > 0x7F || delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+			throw new IllegalArgumentException("Invalid delimiter '" + delimiter + "'");
+		}
+		if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+		if (threads <= 0) throw new IllegalArgumentException("Threads count must be positive");
+		this.expression = expression;
+		this.context = context;
+		this.mode = mode;
+		this.delimiter = (byte) delimiter;
+		this.chunkSize = chunkSize;
+		this.threads = threads;
+	}
+
+	public CsvEval(Expression expression, EvalContext context, Mode mode) {
+		this(expression, context, mode, ',', DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Evaluate expression over every row of input.
+	 * @param input Input CSV file.
+	 * @param output Output stream. It is not closed.
+	 * @return Evaluation statistics.
+	 */
+	public Result run(Path input, OutputStream output) throws IOException {
+		long start = System.nanoTime();
+
+		try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long headerEnd = lineEnd(channel, 0, size);
+			String[] header = readHeader(channel, headerEnd);
+			Binding binding = bind(header);
+
+			if (mode == Mode.FILTER) {
+				ByteBuffer headerBytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd);
+				byte[] bytes = new byte[(int) headerEnd];
+				headerBytes.get(bytes);
+				output.write(bytes);
+				if (headerEnd > 0 && bytes[bytes.length - 1] != '\n') output.write('\n');
+			}
+
+			ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+				Thread thread = new Thread(r, "CsvEval");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+			try {
+				// Bound the number of buffered chunks, so output of huge files isn't held in memory
+				Deque<Future<Chunk>> pending = new ArrayDeque<>();
+				long rows = 0, matched = 0;
+				long position = headerEnd;
+
+				while (position < size || !pending.isEmpty()) {
+					while (position < size && pending.size() < threads * 2) {
+						long end = lineEnd(channel, Math.min(position + chunkSize, size) - 1, size);
+						MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+						pending.add(executor.submit(() -> process(buffer, binding)));
+						position = end;
+					}
+
+					Chunk chunk = await(pending.removeFirst());
+					chunk.output.writeTo(output);
+					rows += chunk.rows;
+					matched += chunk.matched;
+				}
+
+				output.flush();
+				return new Result(rows, mode == Mode.FILTER? matched : rows, System.nanoTime() - start);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private static Chunk await(Future<Chunk> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException re) throw re;
+			if (e.getCause() instanceof Error err) throw err;
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private Binding bind(String[] header) {
+		List<String> variables = new ArrayList<>(ExpressionAnalysis.of(expression).rootVariables());
+		List<String> names = new ArrayList<>();
+		int[] slotOfColumn = new int[header.length];
+		Arrays.fill(slotOfColumn, -1);
+		int lastColumn = -1;
+
+		for (int i = 0; i < header.length; i++) {
+			if (!variables.contains(header[i]) || names.contains(header[i])) continue;
+			slotOfColumn[i] = names.size();
+			names.add(header[i]);
+			lastColumn = i;
+		}
+
+		ScopedVariables.Layout layout = ScopedVariables.Layout.of(names.toArray(String[]::new));
+		return new Binding(VirtualMachineExpression.compile(expression, layout), layout, slotOfColumn, lastColumn);
+	}
+
+	private Chunk process(ByteBuffer buffer, Binding binding) {
+		ScopedVariables variables = new ScopedVariables(binding.layout);
+		ByteArrayOutputStream output = new ByteArrayOutputStream(mode == Mode.FILTER? buffer.limit() / 4 : buffer.limit() / 8);
+		byte[] copy = new byte[256];
+		long rows = 0, matched = 0;
+		int limit = buffer.limit();
+		int line = 0;
+
+		while (line < limit) {
+			int end = line;
+			while (end < limit && buffer.get(end) != '\n') end++;
+			int next = end < limit? end + 1 : end;
+			int content = end > line && buffer.get(end - 1) == '\r'? end - 1 : end;
+
+			if (content > line) {
+				bindRow(buffer, line, content, binding, variables);
+				Object result = binding.program.eval(context, variables);
+				rows++;
+
+				if (mode == Mode.MAP) {
+					if (result != null) output.writeBytes(String.valueOf(result).getBytes(StandardCharsets.UTF_8));
+					output.write('\n');
+				} else if (result == Boolean.TRUE) {
+					int length = content - line;
+					if (copy.length < length + 1) copy = new byte[Math.max(length + 1, copy.length * 2)];
+					buffer.get(line, copy, 0, length);
+					copy[length] = '\n';
+					output.write(copy, 0, length + 1);
+					matched++;
+				} else if (result != null && result != Boolean.FALSE) {
+					byte[] row = new byte[content - line];
+					buffer.get(line, row);
+					throw new IllegalStateException("Filter evaluated to " + result + " instead of a boolean for row: " + new String(row, StandardCharsets.UTF_8));
+				}
+			}
+
+			line = next;
+		}
+
+		return new Chunk(output, rows, matched);
+	}
+
+	private void bindRow(ByteBuffer buffer, int from, int to, Binding binding, ScopedVariables variables) {
+		int column = 0;
+		int cell = from;
+
+		// Columns after the last bound column are never scanned
+		while (column <= binding.lastColumn) {
+			boolean quoted = cell < to && buffer.get(cell) == '"';
+			int end = quoted? closingQuote(buffer, cell, to) + 1 : cell;
+			while (end < to && buffer.get(end) != delimiter) end++;
+
+			int slot = column < binding.slotOfColumn.length? binding.slotOfColumn[column] : -1;
+			if (slot >= 0) variables.set(slot, quoted? unquote(buffer, cell, end) : parse(buffer, cell, end));
+
+			column++;
+			if (end >= to) break;
+			cell = end + 1;
+		}
+
+		// Short rows leave remaining columns empty
+		for (; column <= binding.lastColumn; column++) {
+			int slot = binding.slotOfColumn[column];
+			if (slot >= 0) variables.set(slot, null);
+		}
+	}
+
+	private static int closingQuote(ByteBuffer buffer, int quote, int to) {
+		int i = quote + 1;
+		while (i < to) {
+			if (buffer.get(i) == '"') {
+				if (i + 1 < to && buffer.get(i + 1) == '"') i += 2;
+				else return i;
+			} else {
+				i++;
+			}
+		}
+		return to - 1;
+	}
+
+	private static String unquote(ByteBuffer buffer, int from, int to) {
+		int last = closingQuote(buffer, from, to);
+		byte[] bytes = new byte[Math.max(last - from - 1, 0)];
+		int length = 0;
+
+		for (int i = from + 1; i < last; i++) {
+			byte b = buffer.get(i);
+			bytes[length++] = b;
+			if (b == '"') i++;
+		}
+
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parse unquoted cell. Integers are parsed directly from bytes without creating strings.
+	 */
+	static Object parse(ByteBuffer buffer, int from, int to) {
+		if (from >= to) return null;
+
+		int i = from;
+		boolean negative = buffer.get(i) == '-';
+		if (negative || buffer.get(i) == '+') i++;
+
+		int digits = i;
+		long value = 0;
+		while (digits < to && buffer.get(digits) >= '0' && buffer.get(digits) <= '9') {
+			value = value * 10 + (buffer.get(digits) - '0');
+			digits++;
+		}
+
+		// Up to 18 digits can't overflow
+		if (digits == to && digits > i && digits - i <= 18) {
+			value = negative? -value : value;
+			if (value == (int) value) return (int) value;
+			return value;
+		}
+
+		byte[] bytes = new byte[to - from];
+		buffer.get(from, bytes);
+		String text = new String(bytes, StandardCharsets.UTF_8);
+		if (digits == to && digits > i) {
+			try {
+				return Long.parseLong(text);
+			} catch (NumberFormatException e) {
+				return Double.parseDouble(text);
+			}
+		}
+		if (isDecimal(bytes)) {
+			try {
+				return Double.parseDouble(text);
+			} catch (NumberFormatException e) {
+				return text;
+			}
+		}
+		return text;
+	}
+
+	private static boolean isDecimal(byte[] bytes) {
+		boolean digit = false;
+		for (byte b : bytes) {
+			if (b >= '0' && b <= '9') digit = true;
+			else if (b != '.' && b != 'e' && b != 'E' && b != '-' && b != '+') return false;
+		}
+		return digit;
+	}
+
+	private String[] readHeader(FileChannel channel, long headerEnd) throws IOException {
+		if (headerEnd > Integer.MAX_VALUE) throw new IOException("Header line is too long");
+		ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd);
+		int to = (int) headerEnd;
+		if (to > 0 && buffer.get(to - 1) == '\n') to--;
+		if (to > 0 && buffer.get(to - 1) == '\r') to--;
+
+		List<String> names = new ArrayList<>();
+		int cell = 0;
+		while (true) {
+			boolean quoted = cell < to && buffer.get(cell) == '"';
+			int end = quoted? closingQuote(buffer, cell, to) + 1 : cell;
+			while (end < to && buffer.get(end) != delimiter) end++;
+
+			if (quoted) {
+				names.add(unquote(buffer, cell, end));
+			} else {
+				byte[] bytes = new byte[end - cell];
+				buffer.get(cell, bytes);
+				names.add(new String(bytes, StandardCharsets.UTF_8).trim());
+			}
+
+			if (end >= to) break;
+			cell = end + 1;
+		}
+
+		return names.toArray(String[]::new);
+	}
+
+	/**
+	 * Find end of line that contains given position.
+	 * @return Position after line break, or size of file if it is the last line.
+	 */
+	private static long lineEnd(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer scan = ByteBuffer.allocate(64 * 1024);
+		long offset = Math.max(position, 0);
+
+		while (offset < size) {
+			scan.clear();
+			int read = channel.read(scan, offset);
+			if (read <= 0) break;
+			for (int i = 0; i < read; i++) {
+				if (scan.get(i) == '\n') return offset + i + 1;
+			}
+			offset += read;
+		}
+
+		return size;
+	}
+
+	public static void main(String[] args) throws IOException {
+		System.exit(run(args, System.err));
+	}
+
+	static int run(String[] args, PrintStream log) throws IOException {
+		Mode mode = Mode.MAP;
+		char delimiter = ',';
+		int threads = Runtime.getRuntime().availableProcessors();
+		int chunkSize = DEFAULT_CHUNK_SIZE;
+		List<String> positional = new ArrayList<>();
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "--filter" -> mode = Mode.FILTER;
+				case "--map" -> mode = Mode.MAP;
+				case "--delimiter" -> {
+					String value = args[++i];
+					if (value.length() != 1) throw new IllegalArgumentException("Delimiter must be a single character");
+					delimiter = value.charAt(0);
+				}
+				case "--threads" -> threads = Integer.parseInt(args[++i]);
+				case "--chunk-size" -> chunkSize = Integer.parseInt(args[++i]);
+				default -> positional.add(args[i]);
+				}
+			}
+
+			if (positional.size() != 3) {
+				log.println("Usage: CsvEval [--map | --filter] [--delimiter <char>] [--threads <n>] [--chunk-size <bytes>] <expression> <input> <output>");
+				return 2;
+			}
+
+			Expression expression = Expression.parse(positional.get(0));
+			CsvEval eval = new CsvEval(expression, BooleanEvalContext.INSTANCE, mode, delimiter, chunkSize, threads);
+			Result result;
+
+			try (OutputStream output = Files.newOutputStream(Path.of(positional.get(2)))) {
+				result = eval.run(Path.of(positional.get(1)), output);
+			}
+
+			log.println(result);
+			return 0;
+		} catch (IllegalArgumentException | IllegalStateException | ArrayIndexOutOfBoundsException e) {
+			log.println("Error: " + (e instanceof ArrayIndexOutOfBoundsException? "Missing option value" : e.getMessage()));
+			return e instanceof IllegalStateException? 1 : 2;
+		}
+	}
+
+	public enum Mode {
+		/**
+		 * Write value of expression for each row.
+		 */
+		MAP,
+		/**
+		 * Copy rows that expression evaluates to {@link Boolean#TRUE}.
+		 */
+		FILTER
+	}
+
+	/**
+	 * @param rows Number of rows evaluated.
+	 * @param written Number of rows written to output, excluding header.
+	 * @param nanos Wall clock time.
+	 */
+	public record Result(long rows, long written, long nanos) {
+		public double rowsPerSecond() {
+			return nanos == 0? 0 : rows * 1e9 / nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d rows, %d written in %.3f s (%.0f rows/s)", rows, written, nanos / 1e9, rowsPerSecond());
+		}
+	}
+
+	private record Binding(VirtualMachineExpression program, ScopedVariables.Layout layout, int[] slotOfColumn, int lastColumn) {}
+
+	private record Chunk(ByteArrayOutputStream output, long rows, long matched) {}
+}
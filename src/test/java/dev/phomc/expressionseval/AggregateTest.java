@@ -0,0 +1,120 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+
+public class AggregateTest {
+	private static final EvalContext CTX = AggregateEvalContext.INSTANCE;
+	private static final VariablesInterface VARS = VariablesInterface.of(Map.of(
+			"samples", new double[] { 1.5, 2.5, 4 },
+			"counts", new long[] { 3, 1, 2 },
+			"list", List.of(1, 2, 3),
+			"empty", new long[0]));
+
+	private static Object eval(String source) {
+		return Expression.compile(source).eval(CTX, VARS);
+	}
+
+	@Test
+	public void testAggregates() {
+		assertEquals(8D, eval("sum(samples)"));
+		assertEquals(6L, eval("sum(counts)"));
+		assertEquals(2D, eval("avg(list)"));
+		assertEquals(1L, eval("min(counts)"));
+		assertEquals(4D, eval("max(samples)"));
+		assertEquals(3, eval("count(list)"));
+		assertEquals(0L, eval("sum(empty)"));
+		assertNull(eval("max(empty)"));
+		assertEquals(5L, eval("sum(5)"));
+		assertThrows(IllegalArgumentException.class, () -> eval("sum(samples, counts)"));
+	}
+
+	@Test
+	public void testOptIn() {
+		assertNull(Expression.compile("sum").eval(new SampleEvalContext(), VARS));
+		assertEquals(Aggregate.SUM, Expression.compile("sum").eval(CTX, VARS));
+	}
+
+	@Test
+	public void testElementWise() {
+		assertArrayEquals(new double[] { 3, 5, 8 }, (double[]) eval("samples * 2"));
+		assertArrayEquals(new long[] { 4, 3, 5 }, (long[]) eval("counts + list"));
+		assertArrayEquals(new double[] { 0, 0, -2 }, (double[]) eval("4 - samples - counts + counts * 0.5 - 1"));
+		assertArrayEquals(new double[] { 9, 1, 4 }, (double[]) eval("counts ** 2"));
+		assertEquals(16D, eval("sum(samples * 2)"));
+		assertEquals(14.5D, eval("sum(samples * counts) - 0.5"));
+
+		assertThrows(IllegalArgumentException.class, () -> eval("counts + empty"));
+	}
+
+	@Test
+	public void testVariablesTakePrecedence() {
+		VariablesInterface vars = VariablesInterface.of(Map.of("max", 42, "values", new long[] { 1, 2 }));
+		assertEquals(42, Expression.parse("max").eval(CTX, vars));
+		assertEquals(2, Expression.parse("count(values)").eval(CTX, vars));
+	}
+
+	@Test
+	public void testNullVariablesAreNotAggregates() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("count", null);
+		assertNull(Expression.parse("count + 1").eval(CTX, VariablesInterface.of(map)));
+
+		ScopedVariables scope = new ScopedVariables(ScopedVariables.Layout.of("max")).set("max", null);
+		assertNull(Expression.compile("max").eval(CTX, scope));
+		assertEquals(Aggregate.SUM, Expression.parse("sum").eval(CTX, null));
+
+		// Declared variables are never aggregates, whether they are read by name or from resolved slots
+		ScopedVariables.Layout layout = ScopedVariables.Layout.of("max");
+		assertNull(Expression.parse("max").eval(CTX, new ScopedVariables(layout)));
+		assertNull(VirtualMachineExpression.compile(Expression.parse("max"), layout).eval(CTX, new ScopedVariables(layout)));
+		assertEquals(Aggregate.MIN, VirtualMachineExpression.compile(Expression.parse("min"), layout).eval(CTX, new ScopedVariables(layout)));
+	}
+
+	@Test
+	public void testNotMemoized() {
+		EvalContext ctx = new MemoizingEvalContext(CTX, 16);
+		double[] samples = { 1, 2, 3 };
+		VariablesInterface vars = VariablesInterface.of(Map.of("samples", samples));
+		Expression expr = Expression.compile("sum(samples)");
+
+		assertEquals(6D, expr.eval(ctx, vars));
+		samples[2] = 10;
+		assertEquals(13D, expr.eval(ctx, vars));
+		samples[2] = 3;
+		assertEquals(6D, expr.eval(ctx, vars));
+		assertNull(((MemoizingEvalContext) ctx).cacheOf(Aggregate.SUM));
+	}
+}
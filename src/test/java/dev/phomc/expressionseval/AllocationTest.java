@@ -0,0 +1,132 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+import dev.phomc.expressionseval.struct.StructExpression;
+import dev.phomc.expressionseval.struct.StructLayout;
+
+/**
+ * Allocation budgets of evaluation hot path. Each expression is warmed up before measuring, and the budget is
+ * the average number of bytes allocated by a single {@code eval()} call.
+ */
+public class AllocationTest {
+	private static final int WARMUP_ITERATIONS = 50_000;
+	private static final int MEASURE_ITERATIONS = 100_000;
+
+	private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private static volatile Object sink;
+
+	private final EvalContext ctx = new SampleEvalContext();
+	private final VariablesInterface variables = VariablesInterface.of(Map.of(
+			"x", 3,
+			"y", 4,
+			"f", 1.5D,
+			"particle", Map.of("position", Map.of("x", 5, "y", 6)),
+			"inc", (Function<Object, Object>) v -> (int) v + 1));
+
+	@BeforeAll
+	public static void checkSupported() {
+		assumeTrue(THREADS.isThreadAllocatedMemorySupported(), "Thread allocated memory is not supported");
+		THREADS.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	private static long bytesPerEval(Expression expr, EvalContext ctx, VariablesInterface variables) {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) sink = expr.eval(ctx, variables);
+
+		long before = THREADS.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < MEASURE_ITERATIONS; i++) sink = expr.eval(ctx, variables);
+		long after = THREADS.getCurrentThreadAllocatedBytes();
+		return (after - before) / MEASURE_ITERATIONS;
+	}
+
+	private void assertBudget(long budget, Expression expr, VariablesInterface variables) {
+		long bytes = bytesPerEval(expr, ctx, variables);
+		assertTrue(bytes <= budget, expr + " allocates " + bytes + " bytes per eval, budget is " + budget + " bytes");
+	}
+
+	private void assertBudget(long budget, String source) {
+		assertBudget(budget, Expression.parse(source), variables);
+		assertBudget(budget, Expression.compile(source), variables);
+	}
+
+	@Test
+	public void testIntegerArithmetic() {
+		// Results stay in Integer cache, so nothing should be allocated
+		assertBudget(0, "x * 2 + y - 3");
+		assertBudget(0, "(x + y) * (x - y) / 2");
+	}
+
+	@Test
+	public void testPropertyChains() {
+		assertBudget(0, "particle.position.x + particle.position.y");
+	}
+
+	@Test
+	public void testScopedVariables() {
+		ScopedVariables.Layout layout = ScopedVariables.Layout.of("x", "y");
+		ScopedVariables scope = new ScopedVariables(layout).set("x", 3).set("y", 4);
+		assertBudget(0, VirtualMachineExpression.compile(Expression.parse("x * 2 + y - 3"), layout), scope);
+	}
+
+	@Test
+	public void testFloatingPointArithmetic() {
+		// Each intermediate result is a boxed Double (12 bytes header + 8 bytes value, aligned to 24 bytes)
+		assertBudget(2 * 24, "f * 2 + x");
+	}
+
+	@Test
+	public void testFunctionCalls() {
+		// Parameters array
+		assertBudget(24, "inc(x) + 1");
+	}
+
+	@Test
+	public void testStructWriteBack() {
+		StructLayout layout = StructLayout.builder().add("x", StructLayout.Type.FLOAT).add("vx", StructLayout.Type.FLOAT).build();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1000 * layout.stride);
+		StructExpression move = StructExpression.compile(Expression.parse("x + vx * 0.5"), layout, ctx);
+
+		for (int i = 0; i < WARMUP_ITERATIONS / 1000; i++) move.evalInto(buffer, 0, 1000, layout.field("x"));
+		long before = THREADS.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < MEASURE_ITERATIONS / 1000; i++) move.evalInto(buffer, 0, 1000, layout.field("x"));
+		long bytes = (THREADS.getCurrentThreadAllocatedBytes() - before) / MEASURE_ITERATIONS;
+		assertEquals(0, bytes, "Primitive struct expression allocates " + bytes + " bytes per record");
+	}
+}
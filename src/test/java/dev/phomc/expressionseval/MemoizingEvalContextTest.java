@@ -0,0 +1,103 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+
+public class MemoizingEvalContextTest {
+	@Test
+	public void testMemoize() {
+		AtomicInteger pureCalls = new AtomicInteger(), impureCalls = new AtomicInteger();
+		Function<Object, Object> noise = (Function<Object, Object> & PureFunction) seed -> {
+			pureCalls.incrementAndGet();
+			return (int) seed * 7;
+		};
+		Function<Object, Object> random = seed -> impureCalls.incrementAndGet();
+
+		MemoizingEvalContext ctx = new MemoizingEvalContext(new SampleEvalContext(), 2);
+		VirtualMachineExpression expr = Expression.compile("noise(seed) + random(seed)");
+
+		for (int i = 0; i < 10; i++) expr.eval(ctx, VariablesInterface.of(Map.of("seed", i % 2, "noise", noise, "random", random)));
+		assertEquals(2, pureCalls.get());
+		assertEquals(10, impureCalls.get());
+		assertEquals(8, ctx.cacheOf(noise).hits());
+		assertEquals(0.8, ctx.cacheOf(noise).hitRate(), 1e-9);
+		assertNull(ctx.cacheOf(random));
+
+		// Evict least recently used
+		expr.eval(ctx, VariablesInterface.of(Map.of("seed", 2, "noise", noise, "random", random)));
+		assertEquals(2, ctx.cacheOf(noise).size());
+		expr.eval(ctx, VariablesInterface.of(Map.of("seed", 0, "noise", noise, "random", random)));
+		assertEquals(4, pureCalls.get());
+	}
+
+	@Test
+	public void testFunctionsLimit() {
+		MemoizingEvalContext ctx = new MemoizingEvalContext(new SampleEvalContext(), 4, 8, MemoizingEvalContext.Eviction.LRU);
+		VirtualMachineExpression expr = Expression.compile("square(x)");
+
+		// Capturing lambdas are new function objects for every evaluation
+		for (int i = 0; i < 100; i++) {
+			int factor = i;
+			Function<Object, Object> square = (Function<Object, Object> & PureFunction) x -> (int) x * factor;
+			assertEquals(i * i, expr.eval(ctx, VariablesInterface.of(Map.of("x", i, "square", square))));
+			assertTrue(ctx.caches().size() <= 8);
+		}
+
+		assertThrows(IllegalArgumentException.class, () -> new MemoizingEvalContext(new SampleEvalContext(), 4, 0, MemoizingEvalContext.Eviction.LRU));
+	}
+
+	@Test
+	public void testParametersModifiedInPlace() {
+		Function<Object, Object> first = (Function<Object, Object> & PureFunction) values -> values instanceof double[] array? array[0] : ((Map<?, ?>) values).get("first");
+		MemoizingEvalContext ctx = new MemoizingEvalContext(new SampleEvalContext(), 16);
+		VirtualMachineExpression expr = Expression.compile("first(values)");
+
+		double[] array = { 1, 2 };
+		Map<String, Object> map = new HashMap<>(Map.of("first", 1));
+		for (Object values : new Object[] { array, map }) {
+			VariablesInterface vars = VariablesInterface.of(Map.of("first", first, "values", values));
+			assertEquals(1D, ((Number) expr.eval(ctx, vars)).doubleValue());
+			array[0] = 10;
+			map.put("first", 10);
+			assertEquals(10D, ((Number) expr.eval(ctx, vars)).doubleValue());
+			array[0] = 1;
+			map.put("first", 1);
+			assertEquals(1D, ((Number) expr.eval(ctx, vars)).doubleValue());
+		}
+
+		assertEquals(2, ctx.cacheOf(first).hits());
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+
+public class ScopedVariablesTest {
+	@Test
+	public void testLayeredLookup() {
+		ScopedVariables.Layout tenantLayout = ScopedVariables.Layout.of("rate", "region");
+		ScopedVariables.Layout requestLayout = tenantLayout.child("amount", "rate");
+
+		ScopedVariables tenant = new ScopedVariables(tenantLayout, VariablesInterface.of(Map.of("pi", 3.14)))
+				.set("rate", 2)
+				.set("region", "vn");
+		ScopedVariables request = tenant.child(requestLayout).set("amount", 10);
+
+		assertEquals(3.14, request.get("pi"));
+		assertEquals("vn", request.get("region"));
+		assertEquals(10, request.get("amount"));
+		assertEquals(2, request.get("rate"));
+
+		request.set("rate", 3);
+		assertEquals(3, request.get("rate"));
+
+		request.clear();
+		assertEquals(2, request.get("rate"));
+		assertNull(request.get("amount"));
+
+		assertThrows(IllegalArgumentException.class, () -> request.set("region", "us"));
+		assertThrows(IllegalArgumentException.class, () -> new ScopedVariables(requestLayout, null));
+	}
+
+	@Test
+	public void testResolvedSlots() {
+		ScopedVariables.Layout tenantLayout = ScopedVariables.Layout.of("rate");
+		ScopedVariables.Layout requestLayout = tenantLayout.child("amount");
+		ScopedVariables tenant = new ScopedVariables(tenantLayout).set("rate", 2);
+		ScopedVariables request = tenant.child(requestLayout).set("amount", 10);
+
+		ScopedVariables.Slot rate = requestLayout.resolve("rate");
+		assertEquals(1, rate.depth);
+		assertEquals(2, request.get(rate));
+		assertNull(requestLayout.resolve("missing"));
+
+		Expression expr = Expression.parse("amount * rate + 1");
+		VirtualMachineExpression compiled = VirtualMachineExpression.compile(expr, requestLayout);
+		assertEquals(21, compiled.eval(new SampleEvalContext(), request));
+		assertEquals(21, compiled.eval(new SampleEvalContext(), VariablesInterface.of(Map.of("amount", 10, "rate", 2))));
+	}
+}
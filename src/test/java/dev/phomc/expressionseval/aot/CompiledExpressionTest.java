@@ -0,0 +1,102 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.aot;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.Expression;
+
+public class CompiledExpressionTest {
+	@CompiledExpression
+	public static final String PRICE = "base * 2 + bonus";
+
+	@CompiledExpression(name = "chain")
+	public static final String CHAIN = "particle.position.x * inc(3) + F1.5";
+
+	@Test
+	public void testGenerated() {
+		EvalContext ctx = new SampleEvalContext();
+		VariablesInterface variables = VariablesInterface.of(Map.of(
+				"base", 10,
+				"bonus", 3,
+				"particle", Map.of("position", Map.of("x", 5)),
+				"inc", (Function<Object, Object>) v -> (int) v + 1));
+
+		assertEquals(23, CompiledExpressionTestExpressions.PRICE(ctx, variables));
+		assertEquals(Expression.parse(PRICE).eval(ctx, variables), CompiledExpressionTestExpressions.PRICE_EXPRESSION.eval(ctx, variables));
+		assertEquals(Expression.parse(CHAIN).eval(ctx, variables), CompiledExpressionTestExpressions.chain(ctx, variables));
+	}
+
+	@Test
+	public void testJavadocEscaping() {
+		assertEquals("a &lt; b &amp;&amp; &#123;x&#125; &#64;c *&#47; d/e &#92;u002a", JavaSourceGenerator.escapeJavadoc("a < b && {x} @c */ d/e \\u002a"));
+
+		String generated = new JavaSourceGenerator("test", "Escaped").add("value", "x */ + {y}", Expression.parse("x + y")).generate();
+		assertTrue(generated.contains("<code>x *&#47; + &#123;y&#125;</code>"));
+		assertFalse(generated.contains("{@code"));
+	}
+
+	@Test
+	public void testSyntaxError(@TempDir File output) throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		String source = """
+				public class Broken {
+					@dev.phomc.expressionseval.aot.CompiledExpression
+					public static final String BROKEN = "1 +";
+				}
+				""";
+		JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///Broken.java"), JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) { return source; }
+		};
+
+		String classpath = new File(CompiledExpressionProcessor.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, List.of("-classpath", classpath, "-d", output.getPath(), "-s", output.getPath()), null, List.of(file));
+		task.setProcessors(List.of(new CompiledExpressionProcessor()));
+
+		assertFalse(task.call());
+		assertTrue(diagnostics.getDiagnostics().stream().anyMatch(d -> d.getMessage(null).contains("Invalid expression '1 +': Missing right operand for '+'")));
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.curve;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.ScopedVariables;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+
+public class CurvesTest {
+	private static final EvalContext CTX = new SampleEvalContext();
+
+	@Test
+	public void testSample() {
+		ScopedVariables variables = new ScopedVariables(ScopedVariables.Layout.of("k")).set("k", 3);
+		assertArrayEquals(new double[] { 0, 3, 6, 9, 12 }, Curves.sample(Expression.parse("x * k"), CTX, variables, "x", 0, 4, 5));
+		assertArrayEquals(new float[] { 1, 2, 5 }, Curves.sample(Expression.parse("x * x + 1"), CTX, null, "x", 0, 2, new float[3]));
+
+		// Compiled expressions are sampled as they are
+		Expression compiled = VirtualMachineExpression.compile(Expression.parse("x - 1"));
+		assertArrayEquals(new double[] { -1, 0 }, Curves.sample(compiled, CTX, null, "x", 0, 1, 2));
+		assertArrayEquals(new double[] { 5 }, Curves.sample(Expression.parse("x"), CTX, null, "x", 5, 10, 1));
+	}
+
+	@Test
+	public void testNonNumericSamples() {
+		ScopedVariables variables = new ScopedVariables(ScopedVariables.Layout.of("label")).set("label", "text");
+		double[] samples = Curves.sample(Expression.parse("label"), CTX, variables, "x", 0, 1, 3);
+		for (double sample : samples) assertTrue(Double.isNaN(sample));
+	}
+
+	@Test
+	public void testInterpolation() {
+		LookupTable table = LookupTable.of(Expression.parse("x * x"), CTX, null, "x", 0, 4, 5);
+		assertEquals(5, table.resolution());
+		assertEquals(4, table.applyAsDouble(2), 1e-9);
+		assertEquals(2.5, table.applyAsDouble(1.5), 1e-9);
+		assertEquals(12.5, table.applyAsDouble(3.5), 1e-9);
+
+		ScopedVariables variables = new ScopedVariables(ScopedVariables.Layout.of("x")).set("x", 0.25);
+		assertEquals(0.25, (double) table.eval(CTX, variables), 1e-9);
+		assertNull(table.eval(CTX, variables.set("x", "text")));
+	}
+
+	@Test
+	public void testClamping() {
+		LookupTable table = new LookupTable("x", -1, 1, new double[] { 10, 20, 30 });
+		assertEquals(10, table.applyAsDouble(-5));
+		assertEquals(10, table.applyAsDouble(-1));
+		assertEquals(30, table.applyAsDouble(1));
+		assertEquals(30, table.applyAsDouble(Double.POSITIVE_INFINITY));
+		assertTrue(Double.isNaN(table.applyAsDouble(Double.NaN)));
+	}
+
+	@Test
+	public void testInvalidTables() {
+		assertThrows(IllegalArgumentException.class, () -> new LookupTable("x", 0, 1, new double[] { 1 }));
+		assertThrows(IllegalArgumentException.class, () -> new LookupTable("x", 1, 1, new double[] { 1, 2 }));
+		assertThrows(IllegalArgumentException.class, () -> new LookupTable("x", 0, Double.NaN, new double[] { 1, 2 }));
+		assertThrows(IllegalArgumentException.class, () -> LookupTable.of(Expression.parse("x"), CTX, null, "x", 0, 1, 1));
+
+		// Table doesn't share caller's array
+		double[] values = { 1, 2 };
+		LookupTable table = new LookupTable("x", 0, 1, values);
+		values[1] = 100;
+		assertEquals(2, table.applyAsDouble(1));
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+
+public class AdaptiveExpressionTest {
+	@Test
+	public void testPromotion() {
+		EvalContext ctx = new SampleEvalContext();
+		VariablesInterface vars = VariablesInterface.of(Map.of(
+				"a", Map.of("b", 4),
+				"inc", (Function<Object, Object>) v -> (int) v + 1));
+		String source = "a.b * inc(2) + L1";
+		AdaptiveExpression expr = new AdaptiveExpression(Expression.parse(source), source, 3, 5, Runnable::run);
+		Object expected = Expression.parse(source).eval(ctx, vars);
+
+		assertEquals(AdaptiveExpression.Tier.TREE, expr.getTier());
+		for (int i = 0; i < 2; i++) assertEquals(expected, expr.eval(ctx, vars));
+		assertEquals(AdaptiveExpression.Tier.TREE, expr.getTier());
+
+		for (int i = 0; i < 2; i++) assertEquals(expected, expr.eval(ctx, vars));
+		assertEquals(AdaptiveExpression.Tier.VIRTUAL_MACHINE, expr.getTier());
+
+		for (int i = 0; i < 2; i++) assertEquals(expected, expr.eval(ctx, vars));
+		assertEquals(AdaptiveExpression.Tier.COMPILED, expr.getTier());
+		assertEquals(expected, expr.eval(ctx, vars));
+		assertEquals(13L, expected);
+	}
+
+	@Test
+	public void testStaysInVirtualMachine() {
+		EvalContext ctx = new SampleEvalContext();
+		AdaptiveExpression expr = new AdaptiveExpression(Expression.parse("1 + 2"), null, 1, Integer.MAX_VALUE, Runnable::run);
+		for (int i = 0; i < 10; i++) assertEquals(3, expr.eval(ctx, null));
+		assertEquals(AdaptiveExpression.Tier.VIRTUAL_MACHINE, expr.getTier());
+
+		// Counting stops after the last promotion
+		assertEquals(1, expr.getEvaluations());
+	}
+}
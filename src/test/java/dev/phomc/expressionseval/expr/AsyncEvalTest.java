@@ -0,0 +1,144 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.ScopedVariables;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.registry.RegisteredExpression;
+
+public class AsyncEvalTest {
+	@Test
+	public void testConcurrentCalls() {
+		EvalContext ctx = new SampleEvalContext();
+		List<CompletableFuture<Object>> pending = new ArrayList<>();
+		VariablesInterface vars = VariablesInterface.of(Map.of("x", 2, "fetch", (Function<Object, Object>) key -> {
+			CompletableFuture<Object> future = new CompletableFuture<>();
+			pending.add(future);
+			return future;
+		}));
+
+		for (Expression expr : new Expression[] { Expression.parse("fetch(1) * x + fetch(2)"), Expression.compile("fetch(1) * x + fetch(2)") }) {
+			pending.clear();
+			CompletableFuture<Object> result = expr.evalAsync(ctx, vars);
+
+			// Both calls are started before any of them completes
+			assertEquals(2, pending.size());
+			pending.get(1).complete(3);
+			assertFalse(result.isDone());
+			pending.get(0).complete(10);
+			assertEquals(23, result.join());
+		}
+	}
+
+	@Test
+	public void testWrappedExpressions() {
+		EvalContext ctx = new SampleEvalContext();
+		List<CompletableFuture<Object>> pending = new ArrayList<>();
+		VariablesInterface vars = VariablesInterface.of(Map.of("x", 2, "fetch", (Function<Object, Object>) key -> {
+			CompletableFuture<Object> future = new CompletableFuture<>();
+			pending.add(future);
+			return future;
+		}));
+
+		Expression tree = Expression.parse("fetch(x) * 3");
+		CachedExpression cached = new CachedExpression(tree, 16, true);
+		RegisteredExpression registered = new RegisteredExpression("fetch", "fetch(x) * 3", CompactExpression.of(tree));
+
+		for (Expression expr : new Expression[] { CompactExpression.of(tree), registered, cached }) {
+			pending.clear();
+			CompletableFuture<Object> result = expr.evalAsync(ctx, vars);
+			assertFalse(result.isDone());
+			pending.get(0).complete(5);
+			assertEquals(15, result.join());
+		}
+
+		assertEquals(1, registered.stats.getEvaluationCount());
+
+		// Cached result completes without calling
+		pending.clear();
+		assertEquals(15, cached.evalAsync(ctx, vars).join());
+		assertTrue(pending.isEmpty());
+		assertEquals(1, cached.hits());
+	}
+
+	@Test
+	public void testBlockingCallsOnExecutor() throws Exception {
+		EvalContext ctx = new SampleEvalContext();
+		CountDownLatch latch = new CountDownLatch(3);
+		VariablesInterface vars = VariablesInterface.of(Map.of("fetch", (Function<Object, Object>) key -> {
+			// Each call waits for others, which never happens if calls are sequential
+			latch.countDown();
+
+			try {
+				return latch.await(5, TimeUnit.SECONDS)? key : -1000;
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}));
+
+		ExecutorService executor = Executors.newCachedThreadPool();
+
+		try {
+			assertEquals(6, Expression.parse("fetch(1) + fetch(2) + fetch(3)").evalAsync(ctx, vars, executor).get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFailure() {
+		EvalContext ctx = new SampleEvalContext();
+		VariablesInterface vars = VariablesInterface.of(Map.of("fetch", (Function<Object, Object>) key -> CompletableFuture.failedFuture(new IllegalStateException("Offline"))));
+		CompletableFuture<Object> result = Expression.parse("fetch(1) + 1").evalAsync(ctx, vars);
+		assertTrue(result.isCompletedExceptionally());
+		assertInstanceOf(IllegalStateException.class, assertThrows(Exception.class, result::join).getCause());
+	}
+
+	@Test
+	public void testDecompile() {
+		for (String source : new String[] { "a.b * f(x, 2) + 1", "f(g(x))", "L1 + 2.5" }) {
+			assertEquals(Expression.parse(source), Expression.compile(source).decompile(), source);
+		}
+
+		ScopedVariables.Layout layout = ScopedVariables.Layout.of("x");
+		assertEquals(Expression.parse("x.y + z"), VirtualMachineExpression.compile(Expression.parse("x.y + z"), layout).decompile());
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.SampleEvalContext;
+
+public class BulkCompilerTest {
+	@Test
+	public void testCompileAll() {
+		List<String> sources = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) sources.add("x * " + (i % 300) + " + 1");
+		sources.add("1 +");
+		sources.add("x * 5 + 1");
+		sources.add("(");
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+
+		try {
+			BulkCompiler.Result result = BulkCompiler.compileAll(sources, pool);
+			assertEquals(300, result.compiled().size());
+			assertEquals(List.of("1 +", "("), new ArrayList<>(result.errors().keySet()));
+			assertEquals("Missing right operand for '+'", result.errors().get("1 +").getMessage());
+			assertEquals("x * 0 + 1", result.compiled().keySet().iterator().next());
+
+			VirtualMachineExpression expr = result.get("x * 5 + 1");
+			assertEquals("x * 5 + 1", expr.source);
+			assertEquals(16, expr.eval(new SampleEvalContext(), name -> 3));
+			assertNull(result.get("1 +"));
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
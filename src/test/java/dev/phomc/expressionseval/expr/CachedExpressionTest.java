@@ -0,0 +1,96 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.PureFunction;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+
+public class CachedExpressionTest {
+	private static final EvalContext CTX = new SampleEvalContext();
+
+	@Test
+	public void testKeyedByReadSet() {
+		AtomicInteger calls = new AtomicInteger();
+		Function<Object, Object> rate = (Function<Object, Object> & PureFunction) tier -> {
+			calls.incrementAndGet();
+			return (int) tier * 10;
+		};
+
+		CachedExpression expr = new CachedExpression(Expression.compile("order.customer.tier * rate(region) + 1"), 100);
+		assertEquals(List.of(List.of("order", "customer", "tier"), List.of("rate"), List.of("region")), expr.readSet());
+
+		for (int i = 0; i < 10; i++) {
+			// Unrelated fields change every time
+			VariablesInterface vars = VariablesInterface.of(Map.of(
+					"order", Map.of("id", i, "customer", Map.of("tier", 2, "name", "c" + i)),
+					"region", i % 2,
+					"rate", rate));
+			assertEquals(2 * (i % 2) * 10 + 1, expr.eval(CTX, vars));
+		}
+
+		assertEquals(2, calls.get());
+		assertEquals(8, expr.hits());
+		assertEquals(2, expr.misses());
+		assertEquals(0.8, expr.hitRate(), 1e-9);
+		assertEquals(2, expr.size());
+	}
+
+	@Test
+	public void testImpureFunctionsBypassCache() {
+		AtomicInteger counter = new AtomicInteger();
+		VariablesInterface vars = VariablesInterface.of(Map.of("next", (Function<Object, Object>) v -> counter.incrementAndGet()));
+
+		CachedExpression expr = new CachedExpression(Expression.parse("next(0)"), 10);
+		assertEquals(1, expr.eval(CTX, vars));
+		assertEquals(2, expr.eval(CTX, vars));
+		assertEquals(2, expr.bypasses());
+
+		CachedExpression declared = new CachedExpression(Expression.parse("next(0)"), 10, true);
+		assertEquals(3, declared.eval(CTX, vars));
+		assertEquals(3, declared.eval(CTX, vars));
+		assertEquals(1, declared.hits());
+	}
+
+	@Test
+	public void testBounded() {
+		CachedExpression expr = new CachedExpression(Expression.parse("x * 2"), 3);
+		for (int i = 0; i < 10; i++) assertEquals(i * 2, expr.eval(CTX, VariablesInterface.of(Map.of("x", i))));
+		assertEquals(3, expr.size());
+		assertNull(expr.eval(CTX, name -> null));
+		assertNull(expr.eval(CTX, name -> null));
+		assertEquals(1, expr.hits());
+	}
+}
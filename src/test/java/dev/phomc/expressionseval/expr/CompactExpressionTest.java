@@ -0,0 +1,73 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+
+public class CompactExpressionTest {
+	@Test
+	public void testEval() {
+		EvalContext ctx = new SampleEvalContext();
+		VariablesInterface vars = VariablesInterface.of(Map.of(
+				"a", Map.of("b", 4),
+				"x", 3,
+				"f", (Function<Object, Object>) v -> (int) v * 2));
+
+		for (String source : new String[] { "a.b * f(x) + 1", "(x - 1) * (x + 1)", "f(f(a.b))", "L7" }) {
+			Expression expr = Expression.parse(source);
+			CompactExpression compact = CompactExpression.of(expr);
+			assertEquals(expr.eval(ctx, vars), compact.eval(ctx, vars), source);
+			assertEquals(expr, compact.toExpression(), source);
+		}
+	}
+
+	@Test
+	public void testFootprint() {
+		Expression expr = Expression.parse("a.b.c * 2.5 + f(x, y, 100000) - a.b.d * 2.5");
+		long tree = MemoryFootprint.estimate(expr);
+		long vm = MemoryFootprint.estimate(VirtualMachineExpression.compile(expr));
+		long compact = MemoryFootprint.estimate(CompactExpression.of(expr));
+
+		assertTrue(compact < tree, compact + " < " + tree);
+		assertTrue(compact < vm, compact + " < " + vm);
+
+		// Shared nodes are counted once
+		ExpressionInterner interner = new ExpressionInterner();
+		List<Expression> rules = new ArrayList<>();
+		for (int i = 0; i < 10; i++) rules.add(interner.parse("a.b.c * 2.5 + " + i));
+		assertTrue(MemoryFootprint.estimate(rules) < 10 * MemoryFootprint.estimate(rules.get(0)));
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+
+public class DerivativeTest {
+	private static final EvalContext CTX = new SampleEvalContext();
+
+	private static double eval(Expression expr, double t) {
+		Function<Object, Object> sin = v -> Math.sin(((Number) v).doubleValue());
+		Function<Object, Object> cos = v -> Math.cos(((Number) v).doubleValue());
+		Function<Object, Object> sqrt = v -> Math.sqrt(((Number) v).doubleValue());
+		return ((Number) expr.eval(CTX, VariablesInterface.of(Map.of(
+				"t", t,
+				"a", 3D,
+				"sin", sin,
+				"cos", cos,
+				"sqrt", sqrt,
+				"math", Map.of("sin", sin, "cos", cos))))).doubleValue();
+	}
+
+	private static void assertDerivative(String source, Function<Double, Double> expected) {
+		Expression derivative = Derivative.derivative(Expression.parse(source), "t");
+		VirtualMachineExpression compiled = VirtualMachineExpression.compile(derivative);
+
+		for (double t = 0.5; t < 3; t += 0.25) {
+			assertEquals(expected.apply(t), eval(derivative, t), 1e-9, source + " at t = " + t);
+			assertEquals(expected.apply(t), eval(compiled, t), 1e-9, source + " at t = " + t);
+		}
+	}
+
+	@Test
+	public void testDerivatives() {
+		assertDerivative("a * t ** 2 + sin(t)", t -> 2 * 3 * t + Math.cos(t));
+		assertDerivative("t / 2 - 1 / t", t -> 0.5 + 1 / (t * t));
+		assertDerivative("math.cos(t * t) * 5", t -> -Math.sin(t * t) * 2 * t * 5);
+		assertDerivative("sqrt(t) + 2 ** t", t -> 0.5 / Math.sqrt(t) + Math.pow(2, t) * Math.log(2));
+		assertDerivative("a + 4", t -> 0D);
+	}
+
+	@Test
+	public void testSimplify() {
+		assertEquals(1D, assertInstanceOf(Constant.class, Derivative.derivative(Expression.parse("t"), "t")).val);
+		assertEquals(0D, assertInstanceOf(Constant.class, Derivative.derivative(Expression.parse("a * 2"), "t")).val);
+
+		// d/dt (a * t) = a
+		Symbol a = assertInstanceOf(Symbol.class, Derivative.derivative(Expression.parse("a * t"), "t"));
+		assertEquals("a", a.name);
+	}
+
+	@Test
+	public void testUnsupported() {
+		assertThrows(UnsupportedOperationException.class, () -> Derivative.derivative(Expression.parse("t ** t"), "t"));
+		assertThrows(UnsupportedOperationException.class, () -> Derivative.derivative(Expression.parse("noise(t)"), "t"));
+		assertThrows(UnsupportedOperationException.class, () -> Derivative.derivative(Expression.parse("t.x + 1"), "t"));
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.curve.LookupTable;
+import dev.phomc.expressionseval.registry.RegisteredExpression;
+
+public class EvalBudgetTest {
+	private static final EvalContext CTX = new SampleEvalContext();
+
+	@Test
+	public void testInstructionBudget() {
+		VirtualMachineExpression vm = Expression.compile("1 + 2 * 3 + 4");
+		int size = vm.code.size();
+		assertEquals(11, vm.eval(CTX, null, EvalBudget.instructions(size)));
+
+		BudgetExceededException e = assertThrows(BudgetExceededException.class, () -> vm.eval(CTX, null, EvalBudget.instructions(size - 1)));
+		assertEquals(BudgetExceededException.Kind.INSTRUCTIONS, e.getKind());
+		assertEquals(size - 1, e.getLimit());
+
+		// Frame is released after failure
+		assertEquals(11, vm.eval(CTX, null));
+	}
+
+	@Test
+	public void testDeadline() {
+		VariablesInterface vars = VariablesInterface.of(Map.of("slow", (Function<Object, Object>) v -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			return v;
+		}));
+
+		VirtualMachineExpression vm = Expression.compile("slow(1) + slow(2)");
+		BudgetExceededException e = assertThrows(BudgetExceededException.class, () -> vm.eval(CTX, vars, EvalBudget.timeout(Duration.ofMillis(10))));
+		assertEquals(BudgetExceededException.Kind.DEADLINE, e.getKind());
+		assertTrue(e.getActual() > e.getLimit());
+		assertEquals(3, vm.eval(CTX, vars, EvalBudget.of(100, Duration.ofSeconds(10))));
+	}
+
+	@Test
+	public void testCostEstimation() {
+		CostEstimator estimator = new CostEstimator().withFunctionCost("fetch", 500);
+		assertEquals(6, estimator.estimate(Expression.parse("a.b + 1"))); // 2 properties, constant and operator
+		assertEquals(estimator.estimate(Expression.parse("fetch(x) * 2")), estimator.estimate(Expression.compile("fetch(x) * 2")));
+		assertEquals(506, estimator.estimate(Expression.parse("fetch(x) * 2")));
+		assertEquals(26, estimator.estimate(Expression.parse("math.max(1, 2)")));
+
+		BudgetExceededException e = assertThrows(BudgetExceededException.class, () -> estimator.check(Expression.parse("fetch(a) + fetch(b)"), 1000));
+		assertEquals(BudgetExceededException.Kind.ESTIMATED_COST, e.getKind());
+		assertEquals(1009, e.getActual());
+	}
+
+	@Test
+	public void testCostOfWrappedExpressions() {
+		CostEstimator estimator = new CostEstimator().withFunctionCost("fetch", 500);
+		Expression tree = Expression.parse("fetch(a) + fetch(b)");
+		assertEquals(1009, estimator.estimate(new CachedExpression(tree, 16)));
+		assertEquals(1009, estimator.estimate(new AdaptiveExpression("fetch(a) + fetch(b)")));
+		assertEquals(1009, estimator.estimate(new RegisteredExpression("fetch", "fetch(a) + fetch(b)", CompactExpression.of(tree))));
+		assertThrows(BudgetExceededException.class, () -> estimator.check(new CachedExpression(Expression.compile("fetch(a) + fetch(b)"), 16), 1000));
+
+		assertEquals(3, estimator.estimate(new LookupTable("x", 0, 1, new double[] { 0, 1 })));
+		assertEquals(17, estimator.withConstantCost(5).estimate(Expression.parse("1 + 2 * 3")));
+
+		Expression unknown = new Expression() {
+			@Override
+			public Object eval(EvalContext ctx, VariablesInterface variables) {
+				return null;
+			}
+		};
+		assertThrows(IllegalArgumentException.class, () -> estimator.estimate(new OperatorExpression(unknown, Operator.ADD, new Constant(1))));
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.ScopedVariables;
+import dev.phomc.expressionseval.VariablesInterface;
+
+public class ExpressionAnalysisTest {
+	@Test
+	public void testPathsAndFunctions() {
+		String source = "order.customer.tier * rate(order.region) + math.sqrt(order.customer.tier) - discount";
+
+		for (Expression expr : new Expression[] { Expression.parse(source), Expression.compile(source), CompactExpression.of(Expression.parse(source)) }) {
+			ExpressionAnalysis analysis = ExpressionAnalysis.of(expr);
+			assertEquals(Set.of("order.customer.tier", "order.region", "discount"), analysis.propertyPaths());
+			assertEquals(Set.of("rate", "math.sqrt"), analysis.functions());
+			assertEquals(List.of("order", "rate", "math", "discount"), List.copyOf(analysis.rootVariables()));
+			assertTrue(analysis.isComplete());
+			assertFalse(analysis.hasComputedFunctions());
+		}
+	}
+
+	@Test
+	public void testScopedAndComputed() {
+		ScopedVariables.Layout layout = ScopedVariables.Layout.of("x");
+		ExpressionAnalysis scoped = ExpressionAnalysis.of(VirtualMachineExpression.compile(Expression.parse("x.y + z"), layout));
+		assertEquals(Set.of("x.y", "z"), scoped.propertyPaths());
+
+		// f(a).b: property of call result
+		Expression call = new FunctionExpression(new Symbol(Constant.NULL, "f"), new Expression[] { new Symbol(Constant.NULL, "a") });
+		ExpressionAnalysis computed = ExpressionAnalysis.of(new FunctionExpression(new Symbol(call, "b"), new Expression[0]));
+		assertEquals(Set.of("a"), computed.propertyPaths());
+		assertEquals(Set.of("f"), computed.functions());
+		assertTrue(computed.hasComputedFunctions());
+
+		Expression custom = new Expression() {
+			@Override
+			public Object eval(EvalContext ctx, VariablesInterface variables) {
+				return variables.get("anything");
+			}
+		};
+
+		assertFalse(ExpressionAnalysis.of(new OperatorExpression(custom, Operator.ADD, new Constant(1))).isComplete());
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.Operator;
+
+public class ExpressionInternerTest {
+	@Test
+	public void testEquality() {
+		assertEquals(Expression.parse("a.b * f(x, 2) + 1"), Expression.parse("a.b * f(x, 2) + 1"));
+		assertEquals(Expression.parse("a.b * f(x, 2) + 1").hashCode(), Expression.parse("a.b * f(x, 2) + 1").hashCode());
+		assertNotEquals(Expression.parse("a.b * f(x, 2) + 1"), Expression.parse("a.b * f(x, 2) - 1"));
+		assertNotEquals(Expression.parse("1"), Expression.parse("L1"));
+	}
+
+	@Test
+	public void testIntern() {
+		ExpressionInterner interner = new ExpressionInterner();
+		Expression a = interner.parse("price * rate + 1");
+		Expression b = interner.parse("price * rate + 1");
+		Expression c = interner.parse("(price * rate) * 2");
+		assertSame(a, b);
+		assertSame(((OperatorExpression) a).a, ((OperatorExpression) c).a);
+
+		// price, rate, price * rate, 1, + , 2, *
+		assertEquals(7, interner.size());
+		assertSame(Constant.NULL, ((Symbol) ((OperatorExpression) ((OperatorExpression) a).a).a).target);
+	}
+
+	@Test
+	public void testDeepChain() {
+		// Hashes are computed once per node, so interning deep chains is linear and doesn't recurse
+		ExpressionInterner interner = new ExpressionInterner();
+		assertTimeout(Duration.ofSeconds(5), () -> {
+			Expression first = interner.constant(0), second = interner.constant(0);
+			for (int i = 1; i <= 20_000; i++) {
+				first = interner.operator(first, Operator.ADD, interner.constant(i));
+				second = interner.operator(second, Operator.ADD, interner.constant(i));
+			}
+
+			assertSame(first, second);
+			assertEquals(40_001, interner.size());
+		});
+	}
+}
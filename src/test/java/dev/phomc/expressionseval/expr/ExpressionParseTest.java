@@ -71,5 +71,9 @@ public class ExpressionParseTest {
 
 		assertEquals(1 + 2 * (3 - 4 * 5 * (6 + 7 * 8)), Expression.parse("1 + 2 * (3 - 4 * 5 * (6 + 7 * 8))").eval(new SampleEvalContext(), null));
 		assertEquals(1 + 2 * (3 - 4 * 5 * (6 + 7 * 8)), Expression.compile("1 + 2 * (3 - 4 * 5 * (6 + 7 * 8))").eval(new SampleEvalContext(), null));
+
+		VariablesInterface x = VariablesInterface.of(Map.of("x", 3, "neg", (Function<Object, Object>) v -> -(int) v));
+		assertEquals(6, Expression.parse("3 + x").eval(new SampleEvalContext(), x));
+		assertEquals(-3, Expression.parse("neg(x)").eval(new SampleEvalContext(), x));
 	}
 }
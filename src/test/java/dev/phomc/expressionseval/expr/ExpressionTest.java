@@ -26,11 +26,17 @@ package dev.phomc.expressionseval.expr;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
 import org.junit.jupiter.api.Test;
 
 import dev.phomc.expressionseval.EvalContext;
 import dev.phomc.expressionseval.Operator;
 import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
 
 public class ExpressionTest {
 	@Test
@@ -96,4 +102,42 @@ public class ExpressionTest {
 		VirtualMachineExpression compiled = VirtualMachineExpression.compile(expr);
 		assertEquals(expr.eval(ctx, null), compiled.eval(ctx, null));
 	}
+
+	@Test
+	public void testProfiling() {
+		EvalContext ctx = new SampleEvalContext();
+		VirtualMachineExpression compiled = Expression.compile("double(x) * 2 + x");
+		VariablesInterface variables = VariablesInterface.of(Map.of("x", 3, "double", (Function<Object, Object>) v -> (int) v * 2));
+		ExpressionProfile profile = compiled.enableProfiling(4);
+
+		for (int i = 0; i < 100; i++) assertEquals(15, compiled.eval(ctx, variables));
+		assertEquals(100, profile.evaluations.sum());
+		assertTrue(profile.instructions().stream().allMatch(entry -> entry.count() == 100 && entry.samples() == 25));
+
+		List<ExpressionProfile.Entry> hottest = profile.hottest(Integer.MAX_VALUE);
+		assertTrue(hottest.stream().anyMatch(entry -> entry.kind == ExpressionProfile.Kind.FUNCTION && entry.label.equals("double") && entry.count() == 100));
+		assertTrue(hottest.stream().anyMatch(entry -> entry.kind == ExpressionProfile.Kind.OPERATOR && entry.label.equals("*") && entry.count() == 100));
+		assertTrue(hottest.stream().anyMatch(entry -> entry.kind == ExpressionProfile.Kind.SYMBOL && entry.label.equals("x") && entry.count() == 200));
+
+		compiled.disableProfiling();
+		compiled.eval(ctx, variables);
+		assertEquals(100, profile.evaluations.sum());
+	}
+
+	@Test
+	public void testProfilingSharedFunctions() {
+		// Same function object under different names is labelled by call site
+		Function<Object, Object> identity = v -> v;
+		VariablesInterface variables = VariablesInterface.of(Map.of("x", 1, "f", identity, "g", identity, "math", Map.of("id", identity)));
+		VirtualMachineExpression compiled = Expression.compile("f(x) + g(x) + g(1) + math.id(x)");
+		ExpressionProfile profile = compiled.enableProfiling(1);
+
+		for (int i = 0; i < 10; i++) assertEquals(4, compiled.eval(new SampleEvalContext(), variables));
+		Map<String, Long> calls = new HashMap<>();
+		for (ExpressionProfile.Entry entry : profile.hottest(Integer.MAX_VALUE)) {
+			if (entry.kind == ExpressionProfile.Kind.FUNCTION) calls.put(entry.label, entry.count());
+		}
+
+		assertEquals(Map.of("f", 10L, "g", 20L, "math.id", 10L), calls);
+	}
 }
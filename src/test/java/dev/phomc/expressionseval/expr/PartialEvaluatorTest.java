@@ -0,0 +1,84 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.PureFunction;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+
+public class PartialEvaluatorTest {
+	@Test
+	public void testSpecialize() {
+		EvalContext ctx = new SampleEvalContext();
+		VariablesInterface settings = VariablesInterface.of(Map.of(
+				"rate", 3,
+				"config", Map.of("bonus", Map.of("amount", 7))));
+		Expression expr = Expression.parse("amount * (rate * 2 + 1) + config.bonus.amount * rate");
+		Expression residual = PartialEvaluator.specialize(expr, settings, ctx);
+
+		OperatorExpression add = assertInstanceOf(OperatorExpression.class, residual);
+		OperatorExpression mul = assertInstanceOf(OperatorExpression.class, add.a);
+		assertEquals(7, assertInstanceOf(Constant.class, mul.b).val);
+		assertEquals(21, assertInstanceOf(Constant.class, add.b).val);
+
+		VariablesInterface event = VariablesInterface.of(Map.of("amount", 5, "rate", 3, "config", Map.of("bonus", Map.of("amount", 7))));
+		assertEquals(expr.eval(ctx, event), residual.eval(ctx, event));
+		assertEquals(56, PartialEvaluator.specializeAndCompile(expr, settings, ctx).eval(ctx, event));
+	}
+
+	@Test
+	public void testKeepFunctionsAndFailures() {
+		EvalContext ctx = new SampleEvalContext();
+		VariablesInterface settings = VariablesInterface.of(Map.of("zero", 0, "f", (Function<Object, Object>) v -> v));
+
+		Expression expr = Expression.parse("f(2) + 1 / zero");
+		OperatorExpression residual = assertInstanceOf(OperatorExpression.class, PartialEvaluator.specialize(expr, settings, ctx));
+		assertInstanceOf(FunctionExpression.class, residual.a);
+		assertInstanceOf(OperatorExpression.class, residual.b);
+
+		Expression unchanged = Expression.parse("x + y");
+		assertSame(unchanged, PartialEvaluator.specialize(unchanged, settings, ctx));
+	}
+
+	@Test
+	public void testFoldPureFunctions() {
+		EvalContext ctx = new SampleEvalContext();
+		VariablesInterface settings = VariablesInterface.of(Map.of(
+				"region", 3,
+				"rate", (Function<Object, Object> & PureFunction) v -> (int) v * 10));
+
+		Expression residual = PartialEvaluator.specialize(Expression.parse("amount * rate(region)"), settings, ctx);
+		OperatorExpression mul = assertInstanceOf(OperatorExpression.class, residual);
+		assertEquals(30, assertInstanceOf(Constant.class, mul.b).val);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.expr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+
+public class PeepholeOptimizerTest {
+	@Test
+	public void testSuperinstructions() {
+		VirtualMachineExpression vm = Expression.compile("particle.position.x * 2 + max(a, b)");
+		assertEquals("[load particle.position.x, operator * 2, load max, load a, load b, call/2, operator +]", vm.code.toString());
+
+		VirtualMachineExpression unoptimized = VirtualMachineExpression.compile(Expression.parse("particle.position.x * 2 + max(a, b)"), null, false);
+		assertEquals(21, unoptimized.code.size());
+	}
+
+	@Test
+	public void testSameResults() {
+		EvalContext ctx = new SampleEvalContext();
+		VariablesInterface vars = VariablesInterface.of(Map.of(
+				"particle", Map.of("position", Map.of("x", 5, "y", 2)),
+				"a", 3,
+				"b", 7,
+				"max", (BiFunction<Object, Object, Object>) (a, b) -> Math.max((int) a, (int) b),
+				"wrap", (Function<Object, Object>) v -> Map.of("value", Map.of("inner", v))));
+
+		// Parser doesn't read properties of call results, so build wrap(a).value.inner - 1 by hand
+		Expression call = new FunctionExpression(new Symbol(Constant.NULL, "wrap"), new Expression[] { new Symbol(Constant.NULL, "a") });
+		Expression properties = new OperatorExpression(new Symbol(new Symbol(call, "value"), "inner"), Operator.SUBTRACT, new Constant(1));
+
+		for (Expression tree : new Expression[] {
+				Expression.parse("particle.position.x * 2 + max(a, b)"),
+				properties,
+				Expression.parse("max(particle.position.x, particle.position.y) ** 2"),
+				Expression.parse("2 * a / b"),
+				Expression.parse("L4") }) {
+			String source = tree.toString();
+			VirtualMachineExpression optimized = VirtualMachineExpression.compile(tree);
+			VirtualMachineExpression unoptimized = VirtualMachineExpression.compile(tree, null, false);
+
+			assertEquals(tree.eval(ctx, vars), optimized.eval(ctx, vars), source);
+			assertEquals(unoptimized.eval(ctx, vars), optimized.eval(ctx, vars), source);
+			assertTrue(optimized.code.size() <= unoptimized.code.size(), source);
+			assertEquals(tree, optimized.decompile(), source);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.jfr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.VirtualMachineExpression;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTest {
+	@TempDir
+	Path dir;
+
+	@Test
+	public void testEvents() throws IOException {
+		String source = "price * 2 + 1";
+		VirtualMachineExpression expr;
+
+		try (Recording recording = new Recording()) {
+			recording.enable(ParseEvent.class);
+			recording.enable(CompileEvent.class);
+			recording.enable(EvalEvent.class).withThreshold(Duration.ZERO);
+			recording.start();
+
+			expr = Expression.compile(source);
+			assertTrue(EvalEvent.isTypeEnabled());
+			assertEquals(11, expr.eval(new SampleEvalContext(), VariablesInterface.of(Map.of("price", 5))));
+
+			recording.stop();
+			recording.dump(dir.resolve("events.jfr"));
+		}
+
+		// Evaluating doesn't create events when no recording enables them
+		assertFalse(EvalEvent.isTypeEnabled());
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(dir.resolve("events.jfr"));
+		RecordedEvent parse = single(events, "dev.phomc.expressionseval.Parse");
+		assertEquals(source, parse.getString("expression"));
+		assertEquals(5, parse.getInt("tokenCount"));
+
+		RecordedEvent compile = single(events, "dev.phomc.expressionseval.Compile");
+		assertEquals(source, compile.getString("expression"));
+		assertEquals(expr.code.size(), compile.getInt("instructionCount"));
+
+		RecordedEvent eval = single(events, "dev.phomc.expressionseval.Eval");
+		assertEquals(source, eval.getString("expression"));
+		assertEquals(expr.code.size(), eval.getInt("instructionCount"));
+	}
+
+	private static RecordedEvent single(List<RecordedEvent> events, String name) {
+		List<RecordedEvent> matching = events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+		assertEquals(1, matching.size(), name);
+		return matching.get(0);
+	}
+}
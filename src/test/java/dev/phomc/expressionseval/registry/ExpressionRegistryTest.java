@@ -0,0 +1,105 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.registry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+
+public class ExpressionRegistryTest {
+	@Test
+	public void testStats() throws Exception {
+		ExpressionRegistry registry = new ExpressionRegistry("dev.phomc.expressionseval.test");
+		RegisteredExpression expr = registry.register("price", "base * 2 + 1");
+		VariablesInterface variables = VariablesInterface.of(Map.of("base", 10));
+
+		for (int i = 0; i < 100; i++) assertEquals(21, expr.eval(new SampleEvalContext(), variables));
+		assertThrows(RuntimeException.class, () -> expr.eval(null, variables));
+
+		assertEquals(101, expr.stats.getEvaluationCount());
+		assertEquals(1, expr.stats.getErrorCount());
+		assertEquals(101, LongStream.of(expr.stats.getHistogramCounts()).sum());
+		assertTrue(expr.stats.getMaxTimeNanos() > 0);
+		assertTrue(expr.stats.getP50Nanos() <= expr.stats.getP99Nanos());
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = registry.objectNameOf("price");
+		registry.exposeTo(server);
+
+		try {
+			assertEquals(101L, server.getAttribute(name, "EvaluationCount"));
+			assertEquals("base * 2 + 1", server.getAttribute(name, "Source"));
+
+			registry.register("price", "base * 3");
+			assertEquals(0L, server.getAttribute(name, "EvaluationCount"));
+
+			registry.unregister("price");
+			assertFalse(server.isRegistered(name));
+		} finally {
+			registry.unexpose();
+		}
+	}
+
+	@Test
+	public void testConcurrentReplace() throws Exception {
+		ExpressionRegistry registry = new ExpressionRegistry("dev.phomc.expressionseval.test.concurrent");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = registry.objectNameOf("rate");
+
+		// Stale MBean from another registry is replaced
+		ExpressionRegistry stale = new ExpressionRegistry("dev.phomc.expressionseval.test.concurrent");
+		stale.register("rate", "0");
+		stale.exposeTo(server);
+		registry.exposeTo(server);
+
+		try {
+			Thread[] threads = new Thread[4];
+			for (int i = 0; i < threads.length; i++) {
+				int thread = i;
+				threads[i] = new Thread(() -> {
+					for (int j = 0; j < 200; j++) registry.register("rate", thread + " * " + j);
+				});
+				threads[i].start();
+			}
+			for (Thread thread : threads) thread.join();
+
+			assertEquals(registry.get("rate").stats.getSource(), server.getAttribute(name, "Source"));
+		} finally {
+			registry.unexpose();
+		}
+
+		assertFalse(server.isRegistered(name));
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.rules;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.BooleanEvalContext;
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.Operator;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.Constant;
+import dev.phomc.expressionseval.expr.Expression;
+import dev.phomc.expressionseval.expr.OperatorExpression;
+import dev.phomc.expressionseval.expr.Symbol;
+
+public class RuleMatcherTest {
+	private static final EvalContext CTX = BooleanEvalContext.INSTANCE;
+
+	@Test
+	public void testMatchesLikeEvaluation() {
+		testMatchesLikeEvaluation(new RuleMatcher<>(), CTX);
+		testMatchesLikeEvaluation(new RuleMatcher<>(), new BooleanEvalContext() {});
+	}
+
+	private static void testMatchesLikeEvaluation(RuleMatcher<Integer> matcher, EvalContext ctx) {
+		Random random = new Random(42);
+		List<Expression> rules = new ArrayList<>();
+
+		for (int i = 0; i < 500; i++) {
+			String source = switch (i % 6) {
+			case 0 -> "price > " + random.nextInt(200);
+			case 1 -> random.nextInt(200) + " >= price";
+			case 2 -> "level == " + random.nextInt(10);
+			case 3 -> "price <= " + random.nextInt(200) + ".5";
+			case 4 -> "(level == " + random.nextInt(10) + ") & (price * 2 < " + random.nextInt(400) + ")";
+			default -> "price * 2 < " + random.nextInt(400);
+			};
+
+			Expression expr = i % 2 == 0? Expression.parse(source) : Expression.compile(source);
+			rules.add(expr);
+			matcher.add(i, expr);
+		}
+
+		assertEquals(500, matcher.size());
+		assertEquals(83, matcher.fallbackSize());
+
+		for (int i = 0; i < 200; i++) {
+			VariablesInterface event = VariablesInterface.of(Map.of("price", random.nextInt(220), "level", random.nextInt(10)));
+			List<Integer> expected = new ArrayList<>();
+			for (int j = 0; j < rules.size(); j++) if (rules.get(j).eval(ctx, event) == Boolean.TRUE) expected.add(j);
+			assertEquals(expected, matcher.match(ctx, event));
+		}
+	}
+
+	@Test
+	public void testMissingVariable() {
+		RuleMatcher<String> matcher = new RuleMatcher<>();
+		matcher.add("expensive", Expression.parse("price > 100"));
+		matcher.add("premium", Expression.parse("tier == 3"));
+
+		assertEquals(List.of("premium"), matcher.match(CTX, VariablesInterface.of(Map.of("tier", 3))));
+		assertEquals(List.of("premium"), matcher.match(CTX, VariablesInterface.of(Map.of("tier", 3.0))));
+		assertEquals(List.of(), matcher.match(CTX, VariablesInterface.of(Map.of("tier", 3.5))));
+	}
+
+	@Test
+	public void testContexts() {
+		RuleMatcher<String> matcher = new RuleMatcher<>();
+		matcher.add("expensive", Expression.parse("price > 100"));
+		matcher.add("premium", Expression.parse("tier == 3"));
+		matcher.add("both", Expression.parse("(price > 100) & (tier == 3)"));
+		VariablesInterface variables = VariablesInterface.of(Map.of("price", 150, "tier", 3));
+
+		assertEquals(List.of("expensive", "premium", "both"), matcher.match(CTX, variables));
+
+		// Comparisons of SimpleEvalContext return operands, so only equality rules match
+		assertEquals(List.of("premium"), matcher.match(new SampleEvalContext(), variables));
+	}
+
+	@Test
+	public void testLargeIntegers() {
+		RuleMatcher<String> matcher = new RuleMatcher<>();
+		matcher.add("above", compare(Operator.GREATER_THAN, 9007199254740992L));
+		matcher.add("atMost", compare(Operator.LESS_OR_EQU, 9007199254740992L));
+		matcher.add("below", compare(Operator.LESS_THAN, 9007199254740994.0));
+
+		assertEquals(List.of("above", "below"), matcher.match(CTX, VariablesInterface.of(Map.of("id", 9007199254740993L))));
+		assertEquals(List.of("atMost", "below"), matcher.match(CTX, VariablesInterface.of(Map.of("id", 9007199254740992L))));
+		assertEquals(List.of("above"), matcher.match(CTX, VariablesInterface.of(Map.of("id", 1e17))));
+	}
+
+	private static Expression compare(Operator op, Object constant) {
+		return new OperatorExpression(new Symbol(Constant.NULL, "id"), op, new Constant(constant));
+	}
+
+	@Test
+	public void testCompareNumbers() {
+		assertEquals(0, BooleanEvalContext.compareNumbers(3, 3L));
+		assertEquals(0, BooleanEvalContext.compareNumbers(3, 3.0));
+		assertTrue(BooleanEvalContext.compareNumbers(Long.MAX_VALUE, 0x1p63) < 0);
+		assertTrue(BooleanEvalContext.compareNumbers(Long.MIN_VALUE, -0x1p63) == 0);
+		assertTrue(BooleanEvalContext.compareNumbers(-3, -3.5) > 0);
+		assertTrue(BooleanEvalContext.compareNumbers(-3.5, -3) < 0);
+		assertTrue(BooleanEvalContext.compareNumbers(2, 2.25) < 0);
+		assertTrue(BooleanEvalContext.compareNumbers(9007199254740993L, 9007199254740992.0) > 0);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.BooleanEvalContext;
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.expr.Expression;
+
+public class ExpressionStreamsTest {
+	private static final EvalContext CTX = new SampleEvalContext();
+
+	private static Stream<Map<String, Object>> records(int count) {
+		return IntStream.range(0, count).mapToObj(i -> Map.of("id", i, "category", i % 4, "price", i * 2));
+	}
+
+	@Test
+	public void testFilterAndMap() {
+		Expression predicate = Expression.parse("category == 3");
+		Expression projection = Expression.parse("price + id");
+
+		List<Object> expected = records(10_000).filter(r -> r.get("category").equals(3)).map(r -> (int) r.get("price") + (int) r.get("id")).collect(Collectors.toList());
+		Stream<Map<String, Object>> filtered = ExpressionStreams.filter(records(10_000), predicate, CTX, RecordAccessor.ofMap());
+		assertEquals(expected, ExpressionStreams.map(filtered, projection, CTX, RecordAccessor.ofMap()).collect(Collectors.toList()));
+
+		// Parallel streams keep encounter order
+		Stream<Map<String, Object>> parallel = ExpressionStreams.filter(records(10_000).parallel(), predicate, CTX, RecordAccessor.ofMap());
+		assertTrue(parallel.isParallel());
+		assertEquals(expected, ExpressionStreams.map(parallel, projection, CTX, RecordAccessor.ofMap()).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testBatchedTraversal() {
+		Expression predicate = Expression.parse("category == 1");
+		Iterator<Map<String, Object>> iter = ExpressionStreams.filter(records(1000), predicate, CTX, RecordAccessor.ofMap()).iterator();
+
+		int count = 0;
+		while (iter.hasNext()) {
+			assertEquals(count * 4 + 1, iter.next().get("id"));
+			count++;
+		}
+
+		assertEquals(250, count);
+		assertEquals(1000, ExpressionStreams.map(records(1000), Expression.parse("id"), CTX, RecordAccessor.ofMap()).spliterator().estimateSize());
+	}
+
+	@Test
+	public void testSortedSource() {
+		TreeSet<Integer> ids = new TreeSet<>(Comparator.reverseOrder());
+		IntStream.range(0, 100).forEach(ids::add);
+		RecordAccessor<Integer> accessor = (id, name) -> id;
+
+		Stream<Integer> filtered = ExpressionStreams.filter(ids.stream(), Expression.parse("id == 42"), CTX, accessor);
+		assertEquals(List.of(42), filtered.sorted(Comparator.reverseOrder()).collect(Collectors.toList()));
+		assertEquals(List.of(7), ExpressionStreams.filter(new TreeSet<>(ids).stream(), Expression.parse("id == 7"), CTX, accessor).sorted().toList());
+		assertEquals(100, ExpressionStreams.filter(ids.stream(), Expression.parse("1 == 1"), CTX, accessor).distinct().count());
+	}
+
+	@Test
+	public void testPredicateResults() {
+		Expression predicate = Expression.parse("price > 150");
+		List<Object> ids = ExpressionStreams.filter(records(100), predicate, BooleanEvalContext.INSTANCE, RecordAccessor.ofMap()).map(r -> r.get("id")).collect(Collectors.toList());
+		assertEquals(IntStream.range(76, 100).boxed().collect(Collectors.toList()), ids);
+
+		// SimpleEvalContext comparisons return operands instead of booleans
+		Stream<Map<String, Object>> filtered = ExpressionStreams.filter(records(100), predicate, CTX, RecordAccessor.ofMap());
+		assertThrows(IllegalStateException.class, filtered::count);
+		assertEquals(0, ExpressionStreams.filter(records(100), Expression.parse("missing"), CTX, RecordAccessor.ofMap()).count());
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.struct;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import dev.phomc.expressionseval.EvalContext;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.VariablesInterface;
+import dev.phomc.expressionseval.expr.Expression;
+
+public class StructExpressionTest {
+	private static final EvalContext CTX = new SampleEvalContext();
+	private static final StructLayout PARTICLE = StructLayout.builder()
+			.add("x", StructLayout.Type.FLOAT)
+			.add("vx", StructLayout.Type.FLOAT)
+			.add("age", StructLayout.Type.INT)
+			.add("id", StructLayout.Type.LONG)
+			.add("mass", StructLayout.Type.DOUBLE)
+			.add("flags", StructLayout.Type.SHORT)
+			.build();
+
+	private static ByteBuffer particles(int count) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(count * PARTICLE.stride);
+
+		for (int i = 0; i < count; i++) {
+			int base = i * PARTICLE.stride;
+			PARTICLE.field("x").write(buffer, base, i * 1.5F);
+			PARTICLE.field("vx").write(buffer, base, 0.25F - i);
+			PARTICLE.field("age").write(buffer, base, i * 7);
+			PARTICLE.field("id").write(buffer, base, 1000L + i);
+			PARTICLE.field("mass").write(buffer, base, 2.5D * i);
+			PARTICLE.field("flags").write(buffer, base, (short) i);
+		}
+
+		return buffer;
+	}
+
+	private static VariablesInterface copy(ByteBuffer buffer, int index) {
+		Map<String, Object> map = new HashMap<>();
+		for (StructLayout.Field field : PARTICLE.fields()) map.put(field.name, field.read(buffer, index * PARTICLE.stride));
+		return VariablesInterface.of(map);
+	}
+
+	@Test
+	public void testLayout() {
+		assertEquals(0, PARTICLE.field("x").offset);
+		assertEquals(8, PARTICLE.field("age").offset);
+		assertEquals(16, PARTICLE.field("id").offset);
+		assertEquals(32, PARTICLE.field("flags").offset);
+		assertEquals(34, PARTICLE.stride);
+		assertThrows(IllegalArgumentException.class, () -> StructLayout.builder().add("x", StructLayout.Type.INT).stride(2).build());
+	}
+
+	@Test
+	public void testSameAsTree() {
+		ByteBuffer buffer = particles(10);
+
+		for (String source : new String[] { "x + vx * 2", "age / 3 - flags", "id * 2 + age", "id + x", "mass ** 2 - age", "x * 2.5", "F1.5 + age", "flags" }) {
+			Expression tree = Expression.parse(source);
+			StructExpression expr = StructExpression.compile(tree, PARTICLE, CTX);
+			assertTrue(expr.isPrimitive(), source);
+
+			for (int i = 0; i < 10; i++) assertEquals(tree.eval(CTX, copy(buffer, i)), expr.eval(buffer, i), source);
+		}
+	}
+
+	@Test
+	public void testWriteBack() {
+		ByteBuffer buffer = particles(100);
+		StructExpression move = StructExpression.compile(Expression.parse("x + vx * 2"), PARTICLE, CTX);
+		move.evalInto(buffer, 10, 100, PARTICLE.field("x"));
+
+		assertEquals(9 * 1.5F, PARTICLE.field("x").read(buffer, 9 * PARTICLE.stride));
+		assertEquals(20 * 1.5F + (0.25F - 20) * 2, PARTICLE.field("x").read(buffer, 20 * PARTICLE.stride));
+	}
+
+	@Test
+	public void testFallback() {
+		ByteBuffer buffer = particles(4);
+		VariablesInterface globals = VariablesInterface.of(Map.of("scale", 3, "twice", (Function<Object, Object>) v -> (int) v * 2));
+		StructExpression expr = StructExpression.compile(Expression.parse("twice(age) + scale"), PARTICLE, CTX, globals);
+		assertFalse(expr.isPrimitive());
+		assertEquals(45, expr.eval(buffer, 3));
+
+		expr.evalInto(buffer, 0, 4, PARTICLE.field("mass"));
+		assertEquals(31D, PARTICLE.field("mass").read(buffer, 2 * PARTICLE.stride));
+
+		// Contexts with custom arithmetic are always evaluated through context
+		EvalContext custom = new SampleEvalContext() {
+			@Override
+			public Object applyOperator(Object a, dev.phomc.expressionseval.Operator op, Object b) {
+				return super.applyOperator(a, op, b);
+			}
+		};
+
+		assertFalse(StructExpression.compile(Expression.parse("x + 1"), PARTICLE, custom).isPrimitive());
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of tensai, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 PhoMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.phomc.expressionseval.tool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.phomc.expressionseval.BooleanEvalContext;
+import dev.phomc.expressionseval.SampleEvalContext;
+import dev.phomc.expressionseval.expr.Expression;
+
+public class CsvEvalTest {
+	@TempDir
+	Path dir;
+
+	private Path orders(int count) throws IOException {
+		String rows = IntStream.range(0, count).mapToObj(i -> i + ",name" + i + "," + (i % 4) + "," + (i * 2)).collect(Collectors.joining("\n"));
+		return Files.writeString(dir.resolve("orders.csv"), "id,name,category,price\n" + rows + "\n");
+	}
+
+	private static String run(CsvEval eval, Path input) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		eval.run(input, output);
+		return output.toString(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testMapInChunks() throws IOException {
+		Path input = orders(10_000);
+		CsvEval eval = new CsvEval(Expression.parse("price + id"), new SampleEvalContext(), CsvEval.Mode.MAP, ',', 100, 4);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		CsvEval.Result result = eval.run(input, output);
+		String expected = IntStream.range(0, 10_000).mapToObj(i -> (i * 3) + "\n").collect(Collectors.joining());
+		assertEquals(expected, output.toString(StandardCharsets.UTF_8));
+		assertEquals(10_000, result.rows());
+		assertEquals(10_000, result.written());
+	}
+
+	@Test
+	public void testFilter() throws IOException {
+		Path input = orders(1000);
+		CsvEval eval = new CsvEval(Expression.parse("category == 1"), new SampleEvalContext(), CsvEval.Mode.FILTER, ',', 64, 3);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		CsvEval.Result result = eval.run(input, output);
+		List<String> lines = output.toString(StandardCharsets.UTF_8).lines().toList();
+		assertEquals("id,name,category,price", lines.get(0));
+		assertEquals(251, lines.size());
+		assertEquals("5,name5,1," + 10, lines.get(2));
+		assertEquals(1000, result.rows());
+		assertEquals(250, result.written());
+	}
+
+	@Test
+	public void testFilterWithComparisons() throws IOException {
+		Path input = orders(1000);
+		CsvEval eval = new CsvEval(Expression.parse("price > 1900"), BooleanEvalContext.INSTANCE, CsvEval.Mode.FILTER, ',', 64, 2);
+		List<String> lines = run(eval, input).lines().toList();
+		assertEquals(List.of("id,name,category,price", "951,name951,3,1902", "952,name952,0,1904"), lines.subList(0, 3));
+		assertEquals(50, lines.size());
+
+		eval = new CsvEval(Expression.parse("(price <= 10) & (category >= 2)"), BooleanEvalContext.INSTANCE, CsvEval.Mode.FILTER);
+		assertEquals("id,name,category,price\n2,name2,2,4\n3,name3,3,6\n", run(eval, input));
+
+		// Integers and decimals are compared by value
+		eval = new CsvEval(Expression.parse("price == 4.0"), BooleanEvalContext.INSTANCE, CsvEval.Mode.MAP);
+		assertEquals("false\nfalse\ntrue\n", run(eval, orders(3)));
+
+		// Large integers aren't rounded to double
+		Path large = Files.writeString(dir.resolve("large.csv"), "a,b\n9007199254740993,9007199254740992.0\n9007199254740992,9007199254740992.0\n");
+		assertEquals("false\ntrue\n", run(new CsvEval(Expression.parse("a == b"), BooleanEvalContext.INSTANCE, CsvEval.Mode.MAP), large));
+		assertEquals("true\nfalse\n", run(new CsvEval(Expression.parse("a > b"), BooleanEvalContext.INSTANCE, CsvEval.Mode.MAP), large));
+	}
+
+	@Test
+	public void testFilterRejectsNonBoolean() throws IOException {
+		Path input = orders(10);
+		CsvEval eval = new CsvEval(Expression.parse("price > 10"), new SampleEvalContext(), CsvEval.Mode.FILTER);
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> run(eval, input));
+		assertTrue(e.getMessage().contains("instead of a boolean"));
+	}
+
+	@Test
+	public void testQuotedAndShortRows() throws IOException {
+		Path input = Files.writeString(dir.resolve("quoted.csv"), "a;\"b\";c\r\n\"x;\"\"y\"\"\";2;3\r\n1\r\n;4;5\r\n;7\r\n");
+		CsvEval eval = new CsvEval(Expression.parse("b"), new SampleEvalContext(), CsvEval.Mode.MAP, ';', 1024, 1);
+		assertEquals("2\n\n4\n7\n", run(eval, input));
+
+		eval = new CsvEval(Expression.parse("a"), new SampleEvalContext(), CsvEval.Mode.MAP, ';', 1024, 1);
+		assertEquals("x;\"y\"\n1\n\n\n", run(eval, input));
+	}
+
+	@Test
+	public void testParseCells() {
+		assertEquals(42, parse("42"));
+		assertEquals(-7, parse("-7"));
+		assertEquals(10_000_000_000L, parse("10000000000"));
+		assertEquals(Long.MAX_VALUE, parse("9223372036854775807"));
+		assertEquals(Long.MIN_VALUE, parse("-9223372036854775808"));
+		assertEquals(1e19, parse("10000000000000000000"));
+		assertEquals(1.5, parse("1.5"));
+		assertEquals(2e3, parse("2e3"));
+		assertEquals("-", parse("-"));
+		assertEquals("12a", parse("12a"));
+		assertEquals("1.2.3", parse("1.2.3"));
+		assertNull(parse(""));
+	}
+
+	private static Object parse(String cell) {
+		byte[] bytes = cell.getBytes(StandardCharsets.UTF_8);
+		return CsvEval.parse(ByteBuffer.wrap(bytes), 0, bytes.length);
+	}
+
+	@Test
+	public void testCommandLine() throws IOException {
+		Path input = orders(100);
+		Path output = dir.resolve("out.csv");
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+		int status = CsvEval.run(new String[] { "--filter", "--threads", "2", "price > 192", input.toString(), output.toString() }, new PrintStream(log, true, StandardCharsets.UTF_8));
+		assertEquals(0, status);
+		assertEquals("id,name,category,price\n97,name97,1,194\n98,name98,2,196\n99,name99,3,198\n", Files.readString(output));
+		assertTrue(log.toString(StandardCharsets.UTF_8).contains("100 rows, 3 written"));
+
+		assertEquals(2, CsvEval.run(new String[] { "id" }, new PrintStream(new ByteArrayOutputStream())));
+	}
+}